@@ -0,0 +1,227 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * 
+ * This class checks that playing the game doesn't allocate anything once it
+ * is warmed up. It runs what the simulation does headless, over thousands of
+ * batches of steps: the keys scripted going through the input queue, the
+ * engine stepped at a fixed rate, every step recorded and timed by the frame
+ * profiler, and a snapshot published after each batch. It counts the bytes
+ * allocated by this thread with the JVM's ThreadMXBean. Starting a new game
+ * may allocate, so what happens between two games isn't counted.
+ * 
+ * It exits with a status of 1 if anything was allocated. Run it with the
+ * Slick library on the classpath, e.g.
+ * 
+ * java -cp bin:slick.jar com.dkhalife.projects.AllocationHarness
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class AllocationHarness {
+	// The length of a batch of steps, as long as a frame at 30 fps, in
+	// milliseconds
+	private static final int FRAME_LENGTH = 33;
+
+	// How many frames we play to warm up, then to measure
+	private static final int WARMUP_FRAMES = 100000;
+	private static final int MEASURED_FRAMES = 100000;
+
+	// We'll change the keys held every few frames
+	private static final int KEYS_PERIOD = 4;
+
+	// The JVM's bean, and what calling it costs
+	private static com.sun.management.ThreadMXBean threads;
+	private static long probeCost;
+
+	// The game being played
+	private static GameEngine engine = new GameEngine(10, 20);
+	private static ReplayRecorder recorder;
+	private static Random keys = new Random(42);
+	private static InputQueue inputs = new InputQueue();
+	private static SnapshotBuffer snapshots = new SnapshotBuffer(10, 20);
+	private static int held = GameEngine.INPUT_NONE;
+	private static int stepTimer = 0;
+	private static int games = 0;
+
+	/**
+	 * 
+	 * The entry point of the harness
+	 * 
+	 */
+	public static void main(String[] args) {
+		threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+		if (!threads.isThreadAllocatedMemorySupported()) {
+			System.out.println("This JVM can't count the bytes allocated by a thread");
+			System.exit(2);
+		}
+
+		threads.setThreadAllocatedMemoryEnabled(true);
+
+		// The game times its frames, so we will too
+		FrameProfiler.setEnabled(true);
+
+		// The replays go to a temporary folder
+		File directory = new File(System.getProperty("java.io.tmpdir"), "tetris-allocation-harness");
+		recorder = new ReplayRecorder(directory);
+
+		engine.reset(42);
+		recorder.begin(engine);
+
+		// We'll let the JIT do its work first
+		for (int frame = 0; frame < WARMUP_FRAMES; ++frame) {
+			if (engine.getState() == GameEngine.State.GAME_OVER) {
+				newGame();
+			}
+
+			playFrame(frame);
+		}
+
+		probeCost = measureProbeCost();
+
+		// Then count what the frames allocate, leaving the new games out
+		long allocated = 0;
+		int measuredGames = games;
+		int ticks = 0;
+		long start = allocatedBytes();
+
+		for (int frame = 0; frame < MEASURED_FRAMES; ++frame) {
+			if (engine.getState() == GameEngine.State.GAME_OVER) {
+				allocated += allocatedBytes() - start - probeCost;
+
+				newGame();
+
+				start = allocatedBytes();
+			}
+
+			ticks += playFrame(frame);
+		}
+
+		allocated += allocatedBytes() - start - probeCost;
+		measuredGames = games - measuredGames;
+
+		for (File replay : directory.listFiles()) {
+			replay.delete();
+		}
+
+		System.out.println(String.format("%d frames, %d ticks, %d games: %d bytes allocated, %.3f bytes per tick", MEASURED_FRAMES, ticks,
+				measuredGames, allocated, (double) allocated / ticks));
+
+		System.exit(allocated > 0 ? 1 : 0);
+	}
+
+	/**
+	 * 
+	 * This method plays a batch of steps the way the simulation does
+	 * 
+	 * @param frame The number of the frame
+	 * @return The number of ticks played
+	 * 
+	 */
+	private static int playFrame(int frame) {
+		// The frames happen one after the other, in the harness' own time
+		long now = (long) frame * FRAME_LENGTH * 1000000L;
+
+		// Any combination of the game keys, but the pause and shadow ones,
+		// pressed and released halfway through the frame
+		if (frame % KEYS_PERIOD == 0) {
+			int next = keys.nextInt(1 << 5);
+
+			for (int bit = 1; bit < 1 << 5; bit <<= 1) {
+				if (((held ^ next) & bit) != 0) {
+					inputs.offer(now - FRAME_LENGTH * 500000L, bit, (next & bit) != 0);
+				}
+			}
+
+			held = next;
+		}
+
+		long start = FrameProfiler.start();
+		FrameProfiler.record(FrameProfiler.Phase.DELTA, FRAME_LENGTH * 1000000L);
+
+		int steps = 0;
+		stepTimer += FRAME_LENGTH;
+
+		while (stepTimer >= GameEngine.TICK_LENGTH && engine.getState() != GameEngine.State.GAME_OVER) {
+			stepTimer -= GameEngine.TICK_LENGTH;
+
+			int input = inputs.take(now - stepTimer * 1000000L);
+
+			// The line clears are timed as the simulation does
+			boolean clearing = engine.getState() == GameEngine.State.LINE_DESTRUCTION;
+
+			long stepStart = FrameProfiler.start();
+			engine.step(input, GameEngine.TICK_LENGTH);
+			long stepEnd = FrameProfiler.start();
+
+			FrameProfiler.record(FrameProfiler.Phase.STEP, stepEnd - stepStart);
+
+			if (clearing) {
+				FrameProfiler.record(FrameProfiler.Phase.LINE_CLEAR, stepEnd - stepStart);
+			}
+
+			recorder.record(input);
+			++steps;
+		}
+
+		// The screen draws the newest snapshot
+		snapshots.getBack().copyFrom(engine, frame);
+		snapshots.publish();
+		snapshots.getFront();
+
+		FrameProfiler.end(FrameProfiler.Phase.UPDATE, start);
+
+		return steps;
+	}
+
+	/**
+	 * 
+	 * This method ends the current game and starts a new one
+	 * 
+	 */
+	private static void newGame() {
+		recorder.finish(engine);
+
+		engine.reset(42 + (++games));
+		stepTimer = 0;
+		inputs.clear();
+		held = GameEngine.INPUT_NONE;
+
+		recorder.begin(engine);
+	}
+
+	/**
+	 * 
+	 * This method measures how many bytes reading the allocated bytes
+	 * allocates, since some JVMs box the thread ID into an array to do it
+	 * 
+	 * @return The smallest cost of a measure
+	 * 
+	 */
+	private static long measureProbeCost() {
+		long cost = Long.MAX_VALUE;
+
+		for (int i = 0; i < 1000; ++i) {
+			long before = allocatedBytes();
+			cost = Math.min(cost, allocatedBytes() - before);
+		}
+
+		return cost;
+	}
+
+	/**
+	 * 
+	 * Getter for the bytes allocated by this thread
+	 * 
+	 * @return How many bytes this thread allocated since it started
+	 * 
+	 */
+	private static long allocatedBytes() {
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
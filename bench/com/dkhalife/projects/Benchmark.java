@@ -0,0 +1,142 @@
+package com.dkhalife.projects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 
+ * This class is a minimal micro-benchmark harness. Each benchmark runs its
+ * operation in timed batches, after a few warmup batches that let the JIT do
+ * its job, and reports the average and best time per operation.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class Benchmark {
+	// How many batches we run before measuring, and how many we measure
+	private static final int WARMUP_BATCHES = 2000;
+	private static final int MEASURED_BATCHES = 5000;
+
+	// We'll keep the results of every operation so that the JIT can't
+	// optimise them away
+	private static volatile int sink;
+
+	// The name shown in the report and the number of operations per batch
+	private final String name;
+	private final int operationsPerBatch;
+
+	/**
+	 * 
+	 * To construct a benchmark we need its name and the size of its batches
+	 * 
+	 * @param name The name of the benchmark
+	 * @param operationsPerBatch How many operations are timed together
+	 * 
+	 */
+	protected Benchmark(String name, int operationsPerBatch) {
+		this.name = name;
+		this.operationsPerBatch = operationsPerBatch;
+	}
+
+	/**
+	 * 
+	 * This method prepares the benchmark for a given board. It is not timed.
+	 * 
+	 * @param board The board to run on
+	 * 
+	 */
+	protected void setUp(BenchmarkBoard board) {
+	}
+
+	/**
+	 * 
+	 * This method restores the state before every batch. It is not timed.
+	 * 
+	 */
+	protected void reset() {
+	}
+
+	/**
+	 * 
+	 * This method runs one batch of operations. It is timed.
+	 * 
+	 * @param operations The number of operations to run
+	 * @return Any value computed by the operations
+	 * 
+	 */
+	protected abstract int run(int operations);
+
+	/**
+	 * 
+	 * This method runs every benchmark on every board and prints the results
+	 * 
+	 * @param benchmarks The benchmarks to run
+	 * @param boards The boards to run them on
+	 * 
+	 */
+	public static void runAll(List<Benchmark> benchmarks, List<BenchmarkBoard> boards) {
+		System.out.println(String.format(Locale.ROOT, "%-28s %-12s %12s %12s", "Benchmark", "Board", "avg ns/op", "min ns/op"));
+
+		for (Benchmark benchmark : benchmarks) {
+			for (BenchmarkBoard board : boards) {
+				benchmark.setUp(board);
+
+				for (int batch = 0; batch < WARMUP_BATCHES; ++batch) {
+					benchmark.timeBatch();
+				}
+
+				long total = 0;
+				long best = Long.MAX_VALUE;
+
+				for (int batch = 0; batch < MEASURED_BATCHES; ++batch) {
+					long elapsed = benchmark.timeBatch();
+
+					total += elapsed;
+					best = Math.min(best, elapsed);
+				}
+
+				double average = (double) total / MEASURED_BATCHES / benchmark.operationsPerBatch;
+				double minimum = (double) best / benchmark.operationsPerBatch;
+
+				System.out.println(String.format(Locale.ROOT, "%-28s %-12s %12.2f %12.2f", benchmark.name, board.getName(), average, minimum));
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method resets the benchmark and times one batch
+	 * 
+	 * @return The time the batch took, in nanoseconds
+	 * 
+	 */
+	private long timeBatch() {
+		reset();
+
+		long start = System.nanoTime();
+		sink += run(operationsPerBatch);
+
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * 
+	 * This method builds the list of boards used by default: an empty pit, a
+	 * half full one and a nearly full one
+	 * 
+	 * @param width The width of the pit
+	 * @param height The height of the pit
+	 * @return The boards
+	 * 
+	 */
+	public static List<BenchmarkBoard> defaultBoards(int width, int height) {
+		List<BenchmarkBoard> boards = new ArrayList<>();
+
+		boards.add(new BenchmarkBoard("empty", width, height, 0));
+		boards.add(new BenchmarkBoard("half", width, height, height / 2));
+		boards.add(new BenchmarkBoard("nearly-full", width, height, height - 4));
+
+		return boards;
+	}
+}
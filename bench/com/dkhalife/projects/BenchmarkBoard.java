@@ -0,0 +1,204 @@
+package com.dkhalife.projects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 
+ * A benchmark board is a realistically filled pit: it is built by dropping
+ * random pieces, clearing the lines they fill, until the stack reaches a given
+ * height. The same seed always builds the same board.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class BenchmarkBoard {
+	// The name of the board and its size
+	private final String name;
+	private final int width;
+	private final int height;
+
+	// The pieces dropped to build the board, in order
+	private final List<Placement> placements = new ArrayList<>();
+
+	/**
+	 * 
+	 * A placement is a piece in a given rotation inserted at a given position
+	 * 
+	 */
+	public static class Placement {
+		public final Piece piece;
+		public final int x;
+		public final int y;
+
+		Placement(Piece piece, int x, int y) {
+			this.piece = piece;
+			this.x = x;
+			this.y = y;
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a board we need its size and how high the stack should be
+	 * 
+	 * @param name The name of the board
+	 * @param width The width of the pit
+	 * @param height The height of the pit
+	 * @param stackHeight How many lines should hold blocks
+	 * 
+	 */
+	public BenchmarkBoard(String name, int width, int height, int stackHeight) {
+		this.name = name;
+		this.width = width;
+		this.height = height;
+
+		Random random = new Random(stackHeight * 31L + width);
+		Pit pit = new Pit(width, height);
+
+		while (getStackHeight(pit) < stackHeight) {
+			Placement placement = randomDrop(pit, random);
+
+			if (placement == null) {
+				break;
+			}
+
+			placements.add(placement);
+			insert(pit, placement);
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the name
+	 * 
+	 * @return The name of the board
+	 * 
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 
+	 * This method builds a new pit holding this board
+	 * 
+	 * @return The pit
+	 * 
+	 */
+	public Pit createPit() {
+		Pit pit = new Pit(width, height);
+		restore(pit);
+
+		return pit;
+	}
+
+	/**
+	 * 
+	 * This method brings a pit back to this board
+	 * 
+	 * @param pit The pit to restore
+	 * 
+	 */
+	public void restore(Pit pit) {
+		pit.clear();
+
+		for (Placement placement : placements) {
+			insert(pit, placement);
+		}
+	}
+
+	/**
+	 * 
+	 * This method finds where random pieces would land on a copy of this board
+	 * 
+	 * @param count How many pieces to drop
+	 * @param seed The seed for the random pieces
+	 * @return The placements, there may be fewer than asked if the pit fills up
+	 * 
+	 */
+	public List<Placement> randomDrops(int count, long seed) {
+		Random random = new Random(seed);
+		Pit pit = createPit();
+		List<Placement> drops = new ArrayList<>();
+
+		for (int i = 0; i < count; ++i) {
+			Placement placement = randomDrop(pit, random);
+
+			if (placement == null) {
+				break;
+			}
+
+			drops.add(placement);
+			pit.insertPieceAt(placement.piece, placement.x, placement.y);
+		}
+
+		return drops;
+	}
+
+	/**
+	 * 
+	 * This method drops a random piece in a random column
+	 * 
+	 * @param pit The pit to drop the piece in
+	 * @param random The source of randomness
+	 * @return Where the piece landed, or null if no piece fits at the top
+	 * 
+	 */
+	private static Placement randomDrop(Pit pit, Random random) {
+		for (int attempt = 0; attempt < 100; ++attempt) {
+			Piece piece = PieceFactory.createPiece(random.nextInt(PieceFactory.PIECE_TYPES));
+
+			for (int rotation = random.nextInt(4); rotation > 0; --rotation) {
+				piece.rotate();
+			}
+
+			int x = random.nextInt(pit.getWidth());
+			int y = pit.getHeight() - 2;
+
+			if (!pit.doesPieceFitAt(piece.getMatrix(), x, y)) {
+				continue;
+			}
+
+			while (pit.doesPieceFitAt(piece.getMatrix(), x, y - 1)) {
+				--y;
+			}
+
+			return new Placement(piece, x, y);
+		}
+
+		return null;
+	}
+
+	/**
+	 * 
+	 * This method inserts a piece and clears the lines it fills
+	 * 
+	 * @param pit The pit
+	 * @param placement The piece and its position
+	 * 
+	 */
+	private static void insert(Pit pit, Placement placement) {
+		pit.insertPieceAt(placement.piece, placement.x, placement.y);
+		pit.destroyCompletedLines();
+	}
+
+	/**
+	 * 
+	 * This method finds how many lines hold at least one block
+	 * 
+	 * @param pit The pit
+	 * @return The height of the stack
+	 * 
+	 */
+	private static int getStackHeight(Pit pit) {
+		for (int line = pit.getHeight() - 1; line >= 0; --line) {
+			if (pit.getLine(line) != 0) {
+				return line + 1;
+			}
+		}
+
+		return 0;
+	}
+}
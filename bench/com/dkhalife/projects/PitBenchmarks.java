@@ -0,0 +1,286 @@
+package com.dkhalife.projects;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.newdawn.slick.geom.Point;
+
+/**
+ * 
+ * This class benchmarks the hot paths of the game: the pit operations, the
+ * line clearing scan and the shadow drop loop the engine used to run along
+ * with what replaced them, and the piece factory. Run it with the Slick
+ * library on the classpath, e.g.
+ * 
+ * java -cp bin:slick.jar com.dkhalife.projects.PitBenchmarks
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class PitBenchmarks {
+	// The size of the pit in the game
+	private static final int WIDTH = 10;
+	private static final int HEIGHT = 20;
+
+	// How many pieces we try to insert in each batch
+	private static final int DROPS = 4;
+
+	/**
+	 * 
+	 * A benchmark that runs on a pit restored to the board before every batch
+	 * 
+	 */
+	private static abstract class PitBenchmark extends Benchmark {
+		protected BenchmarkBoard board;
+		protected Pit pit;
+		protected List<BenchmarkBoard.Placement> drops;
+
+		PitBenchmark(String name, int operationsPerBatch) {
+			super(name, operationsPerBatch);
+		}
+
+		@Override
+		protected void setUp(BenchmarkBoard board) {
+			this.board = board;
+			this.pit = board.createPit();
+			this.drops = board.randomDrops(DROPS, 42);
+		}
+
+		@Override
+		protected void reset() {
+			board.restore(pit);
+		}
+	}
+
+	/**
+	 * 
+	 * The entry point of the benchmarks
+	 * 
+	 */
+	public static void main(String[] args) {
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		benchmarks.add(new PitBenchmark("Pit.doesPieceFitAt", 1000) {
+			@Override
+			protected void reset() {
+				// Testing doesn't change the pit
+			}
+
+			@Override
+			protected int run(int operations) {
+				int fits = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i % drops.size());
+
+					if (pit.doesPieceFitAt(drop.piece.getMatrix(), drop.x, drop.y + (i & 3))) {
+						++fits;
+					}
+				}
+
+				return fits;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Pit.insertPieceAt", DROPS) {
+			@Override
+			protected int run(int operations) {
+				int inserted = 0;
+
+				for (int i = 0; i < operations && i < drops.size(); ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i);
+
+					if (pit.insertPieceAt(drop.piece, drop.x, drop.y)) {
+						++inserted;
+					}
+				}
+
+				return inserted;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Pit.isLineFull", HEIGHT * 50) {
+			@Override
+			protected void reset() {
+				// Testing doesn't change the pit
+			}
+
+			@Override
+			protected int run(int operations) {
+				int full = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					if (pit.isLineFull(i % HEIGHT)) {
+						++full;
+					}
+				}
+
+				return full;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Pit.destroy", 4) {
+			@Override
+			protected int run(int operations) {
+				// We destroy lines near the bottom, where lines usually fill
+				for (int i = 0; i < operations; ++i) {
+					pit.destroy(i);
+				}
+
+				return pit.getBlockAt(0, 0);
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Lock then full-line scan", DROPS) {
+			@Override
+			protected int run(int operations) {
+				// This is the scan the engine used to do after a piece locks
+				int linesDestroyed = 0;
+
+				for (int i = 0; i < operations && i < drops.size(); ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i);
+					pit.insertPieceAt(drop.piece, drop.x, drop.y);
+
+					for (int line = 0; line < pit.getHeight();) {
+						if (pit.isLineFull(line)) {
+							pit.destroy(line);
+							++linesDestroyed;
+						}
+						else {
+							++line;
+						}
+					}
+				}
+
+				return linesDestroyed;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Lock then completed lines", DROPS) {
+			@Override
+			protected int run(int operations) {
+				// This is what the engine does now, only the lines the piece
+				// landed on are looked at
+				int linesDestroyed = 0;
+
+				for (int i = 0; i < operations && i < drops.size(); ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i);
+					pit.insertPieceAt(drop.piece, drop.x, drop.y);
+
+					linesDestroyed += pit.destroyCompletedLines();
+				}
+
+				return linesDestroyed;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Engine shadow drop loop", 100) {
+			@Override
+			protected void reset() {
+				// Dropping doesn't change the pit
+			}
+
+			@Override
+			protected int run(int operations) {
+				int total = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i % drops.size());
+					Point[] matrix = drop.piece.getMatrix();
+
+					// This is the loop done by the engine to find the shadow
+					int shadowPieceY = HEIGHT - 2;
+
+					while (pit.doesPieceFitAt(matrix, drop.x, shadowPieceY)) {
+						--shadowPieceY;
+					}
+
+					total += shadowPieceY + 1;
+				}
+
+				return total;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("Pit.getDropDistance", 100) {
+			@Override
+			protected void reset() {
+				// Dropping doesn't change the pit
+			}
+
+			@Override
+			protected int run(int operations) {
+				int total = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i % drops.size());
+
+					// This is how the engine finds the shadow now, from the
+					// same height as the loop above
+					total += HEIGHT - 2 - pit.getDropDistance(drop.piece.getMatrix(), drop.x, HEIGHT - 2);
+				}
+
+				return total;
+			}
+		});
+
+		benchmarks.add(new PitBenchmark("PitSync.encode after a lock", DROPS) {
+			private PitSync sync = new PitSync(WIDTH, HEIGHT);
+			private ByteBuffer out = ByteBuffer.allocate(sync.getMaxSize());
+
+			@Override
+			protected int run(int operations) {
+				// This is what a versus game sends after each piece, the other
+				// side acknowledging every snapshot right away
+				int bytes = 0;
+
+				for (int i = 0; i < operations && i < drops.size(); ++i) {
+					BenchmarkBoard.Placement drop = drops.get(i);
+					pit.insertPieceAt(drop.piece, drop.x, drop.y);
+
+					out.clear();
+					sync.acknowledge(sync.encode(pit, i, out));
+					bytes += out.position();
+				}
+
+				return bytes;
+			}
+		});
+
+		benchmarks.add(new Benchmark("PieceQueue.next", 1000) {
+			private PieceQueue queue = new PieceQueue(new BagRandomizer(), GameEngine.PREVIEWS);
+
+			@Override
+			protected void setUp(BenchmarkBoard board) {
+				queue.reset(42);
+			}
+
+			@Override
+			protected int run(int operations) {
+				int types = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					types += queue.next().getType();
+				}
+
+				return types;
+			}
+		});
+
+		benchmarks.add(new Benchmark("PieceFactory.generate", 1000) {
+			@Override
+			protected int run(int operations) {
+				int rotations = 0;
+
+				for (int i = 0; i < operations; ++i) {
+					rotations += PieceFactory.generateRandomPiece().getRotation();
+				}
+
+				return rotations;
+			}
+		});
+
+		Benchmark.runAll(benchmarks, Benchmark.defaultBoards(WIDTH, HEIGHT));
+	}
+}
@@ -0,0 +1,195 @@
+package com.dkhalife.projects;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * 
+ * This class loads a game server with many clients at once. It starts a
+ * server in this process, connects the clients to it through a single
+ * selector, and has each of them start games and press random keys for a
+ * while. It then reports how many steps the server kept up with and how much
+ * memory each session takes.
+ * 
+ * The number of clients and how many seconds to play can be given, e.g.
+ * 
+ * java -cp bin:slick.jar com.dkhalife.projects.ServerHarness 10000 30
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class ServerHarness {
+	// How often each client changes the keys it holds, in milliseconds
+	private static final int KEYS_PERIOD = 200;
+
+	/**
+	 * 
+	 * A client plays one game after the other and reads what the server says
+	 * 
+	 */
+	private static class Client {
+		private SocketChannel channel;
+		private ByteBuffer in = ByteBuffer.allocate(4096);
+		private ByteBuffer out = ByteBuffer.allocate(16);
+		private int games = 0;
+
+		Client(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		void send(byte type, int payload) throws IOException {
+			out.clear();
+			out.put(type);
+
+			if (payload >= 0) {
+				out.put((byte) payload);
+			}
+
+			out.flip();
+
+			while (out.hasRemaining()) {
+				channel.write(out);
+			}
+		}
+
+		void read() throws IOException {
+			if (channel.read(in) < 0) {
+				throw new IOException("The server closed the connection");
+			}
+
+			in.flip();
+
+			while (in.hasRemaining()) {
+				byte type = in.get(in.position());
+				int size = type == Protocol.STARTED ? 8 : 5;
+
+				if (in.remaining() < 1 + size) {
+					break;
+				}
+
+				in.get();
+
+				if (type == Protocol.STARTED) {
+					in.getLong();
+				}
+				else {
+					int event = in.get();
+					in.getInt();
+
+					// We'll start over as soon as a game ends
+					if (event == GameEvent.GAME_OVER.ordinal()) {
+						++games;
+						send(Protocol.START, -1);
+					}
+				}
+			}
+
+			in.compact();
+		}
+	}
+
+	/**
+	 * 
+	 * The entry point of the harness
+	 * 
+	 */
+	public static void main(String[] args) throws Exception {
+		int clientCount = args.length >= 1 ? Integer.parseInt(args[0]) : 2000;
+		int seconds = args.length >= 2 ? Integer.parseInt(args[1]) : 20;
+
+		long memoryBefore = usedMemory();
+
+		final GameServer server = new GameServer(0, Runtime.getRuntime().availableProcessors(), clientCount);
+		Thread serverThread = new Thread(server, "Game server");
+		serverThread.start();
+
+		// We'll connect all the clients first
+		Selector selector = Selector.open();
+		Client[] clients = new Client[clientCount];
+		InetSocketAddress address = new InetSocketAddress("localhost", server.getPort());
+
+		for (int i = 0; i < clientCount; ++i) {
+			SocketChannel channel = SocketChannel.open(address);
+			channel.configureBlocking(false);
+
+			clients[i] = new Client(channel);
+			channel.register(selector, SelectionKey.OP_READ, clients[i]);
+		}
+
+		while (server.getSessionCount() < clientCount) {
+			Thread.sleep(10);
+		}
+
+		System.out.println(String.format("%d sessions, %.1f KB per session and its client", clientCount,
+				(usedMemory() - memoryBefore) / 1024.0 / clientCount));
+
+		// Then they all start playing
+		for (Client client : clients) {
+			client.send(Protocol.START, -1);
+		}
+
+		Random random = new Random(42);
+		long start = System.currentTimeMillis();
+		long startSteps = server.getStepCount();
+		long nextKeys = start;
+
+		while (System.currentTimeMillis() - start < seconds * 1000L) {
+			selector.select(10);
+
+			Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+			while (keys.hasNext()) {
+				SelectionKey key = keys.next();
+				keys.remove();
+
+				((Client) key.attachment()).read();
+			}
+
+			if (System.currentTimeMillis() >= nextKeys) {
+				for (Client client : clients) {
+					client.send(Protocol.INPUT, random.nextInt(1 << 5));
+				}
+
+				nextKeys += KEYS_PERIOD;
+			}
+		}
+
+		long elapsed = System.currentTimeMillis() - start;
+		long steps = server.getStepCount() - startSteps;
+		long expected = (long) clientCount * elapsed / GameServer.TICK_LENGTH;
+		int games = 0;
+
+		for (Client client : clients) {
+			games += client.games;
+		}
+
+		System.out.println(String.format("%d steps in %d ms, %.1f%% of real time, %d games over, %d sessions left", steps, elapsed,
+				100.0 * steps / expected, games, server.getSessionCount()));
+
+		server.stop();
+		serverThread.join();
+	}
+
+	/**
+	 * 
+	 * Getter for the memory in use, after collecting the garbage
+	 * 
+	 * @return How many bytes of the heap are used
+	 * 
+	 */
+	private static long usedMemory() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; ++i) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
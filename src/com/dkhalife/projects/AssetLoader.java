@@ -0,0 +1,287 @@
+package com.dkhalife.projects;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.openal.OggData;
+import org.newdawn.slick.openal.OggDecoder;
+import org.newdawn.slick.opengl.ImageDataFactory;
+import org.newdawn.slick.opengl.LoadableImageData;
+
+/**
+ * 
+ * This class loads the images and sounds of the game in the background. The
+ * files are read and decoded by a pool of worker threads, and only the last
+ * step, handing the decoded data to OpenGL and OpenAL, is done on the render
+ * thread by calling upload() every frame.
+ * 
+ * The samples of the pinned sounds go straight into OpenAL buffers of our own,
+ * which the AudioQueue plays, the other sounds being decoded as they are
+ * played.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class AssetLoader {
+	// The workers decoding the files
+	private ExecutorService workers;
+
+	// The assets decoded and waiting to be uploaded
+	private Queue<DecodedAsset> decoded = new ConcurrentLinkedQueue<>();
+
+	// Where the uploaded images go
+	private Map<String, Image> images;
+
+	// How many assets were queued, and which ones are ready to use
+	private int total = 0;
+	private int uploaded = 0;
+	private Set<String> ready = new HashSet<String>();
+
+	// The images drawn together are packed into an atlas, uploaded once they
+	// are all decoded
+	private TextureAtlas atlas = new TextureAtlas();
+	private Image atlasTexture = null;
+	private int atlasTotal = 0;
+	private int atlasDecoded = 0;
+
+	/**
+	 * 
+	 * An asset that was decoded and only needs to be uploaded
+	 * 
+	 */
+	private static class DecodedAsset {
+		private String id;
+		private LoadableImageData image;
+		private OggData sound;
+		private String ref;
+		private boolean inAtlas;
+		private Exception error;
+
+		DecodedAsset(String id, String ref) {
+			this.id = id;
+			this.ref = ref;
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a loader we need where to put the images it loads
+	 * 
+	 * @param images The map receiving the images, by ID
+	 * 
+	 */
+	public AssetLoader(Map<String, Image> images) {
+		this.images = images;
+
+		// We'll keep a core for the render thread
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+		workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			private int count = 0;
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Asset loader " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method queues an image to be loaded
+	 * 
+	 * @param id The ID of the image
+	 * @param ref The path to the image
+	 * @param inAtlas True if the image should be packed into the atlas
+	 * 
+	 */
+	public void addImage(final String id, final String ref, final boolean inAtlas) {
+		++total;
+
+		if (inAtlas) {
+			++atlasTotal;
+		}
+
+		workers.execute(new Runnable() {
+			public void run() {
+				DecodedAsset asset = new DecodedAsset(id, ref);
+				asset.inAtlas = inAtlas;
+
+				try (InputStream in = new BufferedInputStream(new FileInputStream(ref))) {
+					LoadableImageData data = ImageDataFactory.getImageDataFor(ref);
+					data.loadImage(in, false, null);
+
+					asset.image = data;
+				} catch (IOException | RuntimeException e) {
+					asset.error = e;
+				}
+
+				decoded.add(asset);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method queues a pinned sound to be loaded
+	 * 
+	 * @param id The ID of the sound
+	 * @param ref The path to the sound, an OGG file
+	 * 
+	 */
+	public void addSound(final String id, final String ref) {
+		++total;
+
+		workers.execute(new Runnable() {
+			public void run() {
+				DecodedAsset asset = new DecodedAsset(id, ref);
+
+				try (InputStream in = new BufferedInputStream(new FileInputStream(ref))) {
+					asset.sound = new OggDecoder().getData(in);
+				} catch (IOException | RuntimeException e) {
+					asset.error = e;
+				}
+
+				decoded.add(asset);
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method uploads the assets decoded so far. It must be called on the
+	 * render thread.
+	 * 
+	 * @param budget How long the uploads may take, in nanoseconds
+	 * @throws SlickException If an asset couldn't be loaded
+	 * 
+	 */
+	public void upload(long budget) throws SlickException {
+		long deadline = System.nanoTime() + budget;
+		DecodedAsset asset;
+
+		// We'll upload at least one asset per frame so that we always progress
+		while ((asset = decoded.poll()) != null) {
+			if (asset.image != null && asset.inAtlas) {
+				atlas.add(asset.id, asset.image);
+
+				if (++atlasDecoded == atlasTotal) {
+					uploadAtlas();
+				}
+
+				// The images of the atlas are ready all at once
+				continue;
+			}
+			else if (asset.image != null) {
+				images.put(asset.id, new Image(asset.image));
+			}
+			else if (asset.sound != null) {
+				// There is nothing to upload the sound to without the audio
+				// thread, the game will just be silent
+				if (!AudioQueue.isStarted()) {
+					++uploaded;
+					ready.add(asset.id);
+					continue;
+				}
+
+				// The decoder gives us 16 bit samples in the native byte order,
+				// just what OpenAL wants
+				int buffer = AL10.alGenBuffers();
+				int format = asset.sound.channels == 1 ? AL10.AL_FORMAT_MONO16 : AL10.AL_FORMAT_STEREO16;
+
+				AL10.alBufferData(buffer, format, asset.sound.data, asset.sound.rate);
+				AudioQueue.setPinned(asset.id, buffer, asset.sound.data.remaining());
+			}
+			else {
+				throw new SlickException("Resource [" + asset.id + "] could not be loaded", asset.error);
+			}
+
+			++uploaded;
+			ready.add(asset.id);
+
+			if (System.nanoTime() >= deadline) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method packs and uploads the atlas, then cuts its images out
+	 * 
+	 */
+	private void uploadAtlas() {
+		atlas.pack();
+
+		// The sprites are drawn at their size, there is nothing to filter
+		atlasTexture = new Image(atlas, Image.FILTER_NEAREST);
+
+		for (String id : atlas.getIds()) {
+			images.put(id, atlas.getImage(atlasTexture, id));
+			ready.add(id);
+		}
+
+		uploaded += atlasTotal;
+	}
+
+	/**
+	 * 
+	 * Getter for the atlas
+	 * 
+	 * @return The image holding all the images of the atlas, or null until
+	 *         they are loaded
+	 * 
+	 */
+	public Image getAtlas() {
+		return atlasTexture;
+	}
+
+	/**
+	 * 
+	 * Getter for the progress
+	 * 
+	 * @return The fraction of the assets ready to use, from 0 to 1
+	 * 
+	 */
+	public float getProgress() {
+		return total == 0 ? 1 : (float) uploaded / total;
+	}
+
+	/**
+	 * 
+	 * This method tells if an asset is ready to use
+	 * 
+	 * @param id The ID of the asset
+	 * @return True if it was uploaded. False if it is still loading or wasn't
+	 *         queued
+	 * 
+	 */
+	public boolean isReady(String id) {
+		return ready.contains(id);
+	}
+
+	/**
+	 * 
+	 * This method tells if all the assets are ready to use
+	 * 
+	 * @return True if everything was loaded. False otherwise
+	 * 
+	 */
+	public boolean isDone() {
+		return uploaded == total;
+	}
+}
@@ -0,0 +1,359 @@
+package com.dkhalife.projects;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.lwjgl.openal.AL10;
+
+/**
+ * 
+ * This class plays the sounds of the game on a thread of its own, so that
+ * playing one never costs the game more than setting a flag. Any thread can
+ * ask for a sound, which is only noted as pending until the audio thread gets
+ * to it. Asking again for a sound still pending does nothing, so a burst of
+ * the same sound within a few milliseconds is heard once, and the pending
+ * sounds never take more room than one flag each.
+ * 
+ * The audio thread plays the sounds on a fixed set of OpenAL sources created
+ * when it starts, a sound never using more than a few of them at once, and
+ * their samples are kept by a SoundCache. Until
+ * it is started, asking for a sound does nothing at all, which is how the
+ * headless runs stay silent.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class AudioQueue {
+	// The most sounds there can be
+	private static final int MAX_SOUNDS = 64;
+
+	// How many sounds can be heard at once, and how many of them can be the
+	// same sound
+	private static final int VOICES = 16;
+	private static final int VOICES_PER_SOUND = 2;
+
+	// The sounds asked for within this long are played together, in
+	// nanoseconds
+	private static final long COALESCE_NANOS = 10000000L;
+
+	// The sounds: their names, their IDs by name and their samples
+	private static String[] names = new String[MAX_SOUNDS];
+	private static Map<String, Integer> ids = new HashMap<String, Integer>();
+	private static SoundCache cache = new SoundCache(MAX_SOUNDS);
+	private static volatile int count = 0;
+
+	// The sound of each event of the game, by ordinal
+	private static int[] eventSounds;
+
+	// The sounds asked for and not played yet
+	private static AtomicIntegerArray pending = new AtomicIntegerArray(MAX_SOUNDS);
+
+	// The thread playing them, null until started
+	private static volatile Thread thread = null;
+
+	// The sources, only touched by the audio thread, with the sound each one
+	// plays and when it started
+	private static int[] sources = new int[VOICES];
+	private static int[] sourceSounds = new int[VOICES];
+	private static long[] sourceStarts = new long[VOICES];
+
+	static {
+		// The events share their names with their sounds
+		GameEvent[] events = GameEvent.values();
+		eventSounds = new int[events.length];
+
+		for (GameEvent event : events) {
+			eventSounds[event.ordinal()] = getId(event.name());
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the ID of a sound, which is given one the first time it is
+	 * asked for
+	 * 
+	 * @param name The name of the sound, as found in the resources
+	 * @return The ID of the sound
+	 * 
+	 */
+	public static synchronized int getId(String name) {
+		Integer id = ids.get(name);
+
+		if (id != null) {
+			return id;
+		}
+
+		if (count == MAX_SOUNDS) {
+			throw new IllegalStateException("There can't be more than " + MAX_SOUNDS + " sounds");
+		}
+
+		names[count] = name;
+		ids.put(name, count);
+
+		return count++;
+	}
+
+	/**
+	 * 
+	 * This method adds a sound
+	 * 
+	 * @param name The name of the sound
+	 * @param ref The path to the sound, an OGG file
+	 * @param pinned True if the sound is loaded with the game and kept for
+	 *            good, see setPinned(). False if it is only decoded when
+	 *            played
+	 * 
+	 */
+	public static void addSound(String name, String ref, boolean pinned) {
+		cache.register(getId(name), ref, pinned);
+	}
+
+	/**
+	 * 
+	 * Setter for the OpenAL buffer holding the samples of a pinned sound
+	 * 
+	 * @param name The name of the sound
+	 * @param buffer The buffer
+	 * @param size The size of the samples, in bytes
+	 * 
+	 */
+	public static void setPinned(String name, int buffer, int size) {
+		cache.setPinned(getId(name), buffer, size);
+	}
+
+	/**
+	 * 
+	 * Setter for the budget of the samples kept
+	 * 
+	 * @param budget How many bytes of samples may be kept
+	 * 
+	 */
+	public static void setBudget(long budget) {
+		cache.setBudget(budget);
+	}
+
+	/**
+	 * 
+	 * This method starts the audio thread. OpenAL must be up already.
+	 * 
+	 */
+	public static synchronized void start() {
+		if (thread != null) {
+			return;
+		}
+
+		for (int i = 0; i < VOICES; ++i) {
+			sources[i] = AL10.alGenSources();
+			sourceSounds[i] = -1;
+		}
+
+		Thread audio = new Thread("Audio") {
+			public void run() {
+				playPending();
+			}
+		};
+
+		audio.setDaemon(true);
+		audio.start();
+
+		thread = audio;
+	}
+
+	/**
+	 * 
+	 * This method tells if the audio thread was started
+	 * 
+	 * @return True if the sounds are played. False otherwise
+	 * 
+	 */
+	public static boolean isStarted() {
+		return thread != null;
+	}
+
+	/**
+	 * 
+	 * This method asks for a sound to be played
+	 * 
+	 * @param id The ID of the sound
+	 * 
+	 */
+	public static void post(int id) {
+		Thread audio = thread;
+
+		// Only the first time a sound is asked for wakes the audio thread up
+		if (audio != null && pending.getAndSet(id, 1) == 0) {
+			LockSupport.unpark(audio);
+		}
+	}
+
+	/**
+	 * 
+	 * This method asks for the sound of an event to be played
+	 * 
+	 * @param event The event
+	 * 
+	 */
+	public static void post(GameEvent event) {
+		post(eventSounds[event.ordinal()]);
+	}
+
+	/**
+	 * 
+	 * This method asks for a sound to be played by its name, which is only
+	 * meant for the sounds played now and then
+	 * 
+	 * @param name The name of the sound
+	 * 
+	 */
+	public static void post(String name) {
+		post(getId(name));
+	}
+
+	/**
+	 * 
+	 * This method plays the sounds asked for, forever, on the audio thread
+	 * 
+	 */
+	private static void playPending() {
+		while (true) {
+			boolean played = false;
+
+			// The sounds decoded meanwhile are uploaded before they are played
+			cache.update();
+
+			for (int id = 0; id < count; ++id) {
+				if (pending.getAndSet(id, 0) != 0) {
+					play(id);
+					played = true;
+				}
+			}
+
+			if (played) {
+				// We'll let the sounds asked for meanwhile gather
+				long deadline = System.nanoTime() + COALESCE_NANOS;
+
+				for (long left = COALESCE_NANOS; left > 0; left = deadline - System.nanoTime()) {
+					LockSupport.parkNanos(left);
+				}
+			}
+			else {
+				// Until a sound is asked for
+				LockSupport.park();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays a sound on one of the sources
+	 * 
+	 * @param id The ID of the sound
+	 * 
+	 */
+	private static void play(int id) {
+		int buffer = cache.getBuffer(id);
+
+		// The sound will be played once it is decoded, if it isn't too late
+		if (buffer == 0) {
+			return;
+		}
+
+		int free = -1;
+		int oldest = 0;
+		int oldestOfSound = -1;
+		int voices = 0;
+
+		for (int i = 0; i < VOICES; ++i) {
+			boolean playing = sourceSounds[i] >= 0 && AL10.alGetSourcei(sources[i], AL10.AL_SOURCE_STATE) == AL10.AL_PLAYING;
+
+			if (!playing) {
+				free = free < 0 ? i : free;
+				continue;
+			}
+
+			if (sourceStarts[i] < sourceStarts[oldest]) {
+				oldest = i;
+			}
+
+			if (sourceSounds[i] == id) {
+				++voices;
+
+				if (oldestOfSound < 0 || sourceStarts[i] < sourceStarts[oldestOfSound]) {
+					oldestOfSound = i;
+				}
+			}
+		}
+
+		// A sound played too often cuts its own oldest voice, and when every
+		// source is busy the oldest sound is cut
+		int source = voices >= VOICES_PER_SOUND ? oldestOfSound : free >= 0 ? free : oldest;
+
+		AL10.alSourceStop(sources[source]);
+		AL10.alSourcei(sources[source], AL10.AL_BUFFER, buffer);
+		AL10.alSourcePlay(sources[source]);
+
+		sourceSounds[source] = id;
+		sourceStarts[source] = System.nanoTime();
+	}
+
+	/**
+	 * 
+	 * This method tells if a sound is being heard, on the audio thread
+	 * 
+	 * @param id The ID of the sound
+	 * @return True if a source plays it. False otherwise
+	 * 
+	 */
+	public static boolean isPlaying(int id) {
+		for (int i = 0; i < VOICES; ++i) {
+			if (sourceSounds[i] == id && AL10.alGetSourcei(sources[i], AL10.AL_SOURCE_STATE) == AL10.AL_PLAYING) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 
+	 * This method stops a sound and takes its buffer off the sources it was
+	 * played on, on the audio thread, so that the buffer can be deleted
+	 * 
+	 * @param id The ID of the sound
+	 * 
+	 */
+	public static void release(int id) {
+		for (int i = 0; i < VOICES; ++i) {
+			if (sourceSounds[i] == id) {
+				AL10.alSourceStop(sources[i]);
+				AL10.alSourcei(sources[i], AL10.AL_BUFFER, 0);
+				sourceSounds[i] = -1;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the name of a sound
+	 * 
+	 * @param id The ID of the sound
+	 * @return Its name
+	 * 
+	 */
+	public static String getName(int id) {
+		return names[id];
+	}
+
+	/**
+	 * 
+	 * Getter for the number of sounds
+	 * 
+	 * @return How many sounds were given an ID
+	 * 
+	 */
+	public static int getCount() {
+		return count;
+	}
+}
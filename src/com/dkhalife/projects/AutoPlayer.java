@@ -0,0 +1,622 @@
+package com.dkhalife.projects;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import org.newdawn.slick.geom.Point;
+
+/**
+ * 
+ * This class plays the game on its own, for demos. Each time a piece is
+ * dealt, it searches every rotation and column the piece can reach, then
+ * every placement of the next pieces on the boards this leaves, and picks the
+ * placement leading to the best board. The boards are scored by how many
+ * lines they cleared on the way, and by how high, bumpy and holed they are.
+ * 
+ * The search goes one piece deeper at a time, as long as its budget lasts,
+ * with the branches split across the cores. Meanwhile and afterwards it
+ * presses the keys a player would, one step at a time, so that the games it
+ * plays can be recorded like any other.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class AutoPlayer {
+	// How long a move may be thought about by default, in milliseconds
+	public static final int DEFAULT_BUDGET = 50;
+
+	// The weights of what makes a good board
+	private static final double HEIGHT_WEIGHT = -0.510066;
+	private static final double LINES_WEIGHT = 0.760666;
+	private static final double HOLES_WEIGHT = -0.35663;
+	private static final double BUMPINESS_WEIGHT = -0.184483;
+
+	// The branches with at least this many pieces left to place are split
+	// across the cores, the others are searched where they are
+	private static final int FORK_DEPTH = 2;
+
+	// A placement packs the rotation of a piece, the height it is dropped from
+	// and its column, which can be a little past the edges, in an int
+	private static final int FIELD_BITS = 10;
+	private static final int FIELD_MASK = (1 << FIELD_BITS) - 1;
+	private static final int COLUMN_OFFSET = 1 << (FIELD_BITS - 1);
+
+	// The threads searching, shared by every bot and only started once a
+	// search is submitted
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	// How long a move may be thought about, in nanoseconds
+	private long budget;
+
+	// The piece we are placing, and where to, or the search still going
+	private int pieceCount = -1;
+	private ForkJoinTask<Integer> search = null;
+	private int targetRotation;
+	private int targetX;
+	private boolean planned = false;
+
+	// How deep the last search went
+	private volatile int lastDepth = 0;
+
+	/**
+	 * 
+	 * To construct an autoplayer we need how long it may think about a move
+	 * 
+	 * @param budget The budget of each move, in milliseconds
+	 * 
+	 */
+	public AutoPlayer(int budget) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("The budget must be positive");
+		}
+
+		this.budget = budget * 1000000L;
+	}
+
+	/**
+	 * 
+	 * This method forgets the piece being placed, before a new game
+	 * 
+	 */
+	public void reset() {
+		if (search != null) {
+			search.cancel(false);
+		}
+
+		pieceCount = -1;
+		search = null;
+		planned = false;
+	}
+
+	/**
+	 * 
+	 * This method tells what to press for the next step of a game. It must be
+	 * called from the thread stepping the engine, which it only reads.
+	 * 
+	 * @param engine The engine
+	 * @return The inputs for the step, presses without anything held
+	 * 
+	 */
+	public int getInput(GameEngine engine) {
+		if (engine.getState() != GameEngine.State.MOVING_PIECE) {
+			return GameEngine.INPUT_NONE;
+		}
+
+		Piece piece = engine.getCurrentPiece();
+
+		// A new piece is thought about in the background while it falls
+		if (engine.getPieceCount() != pieceCount) {
+			reset();
+
+			pieceCount = engine.getPieceCount();
+			search = POOL.submit(new Search(engine, budget));
+		}
+
+		if (!planned) {
+			if (!search.isDone()) {
+				return GameEngine.INPUT_NONE;
+			}
+
+			int placement = search.join();
+
+			targetRotation = getRotation(placement);
+			targetX = getColumn(placement);
+			planned = true;
+		}
+
+		Pit pit = engine.getPit();
+		int x = engine.getPieceX();
+		int y = engine.getPieceY();
+		Point[] matrix = piece.getMatrix();
+
+		// We'll rotate first, letting the piece down until the rotation fits,
+		// then move it, and drop it once there or if the way is blocked
+		if (piece.getRotation() != targetRotation) {
+			if (pit.doesPieceFitAt(piece.getMatrix(piece.getRotation() + 1), x, y)) {
+				return GameEngine.INPUT_ROTATE << GameEngine.PRESSED_SHIFT;
+			}
+
+			if (pit.doesPieceFitAt(matrix, x, y - 1)) {
+				return GameEngine.INPUT_DOWN << GameEngine.PRESSED_SHIFT;
+			}
+		}
+		else if (x != targetX) {
+			int direction = targetX < x ? -1 : 1;
+
+			if (pit.doesPieceFitAt(matrix, x + direction, y)) {
+				return (direction < 0 ? GameEngine.INPUT_LEFT : GameEngine.INPUT_RIGHT) << GameEngine.PRESSED_SHIFT;
+			}
+		}
+
+		return GameEngine.INPUT_DROP << GameEngine.PRESSED_SHIFT;
+	}
+
+	/**
+	 * 
+	 * Getter for the depth of the last search
+	 * 
+	 * @return How many pieces the last move looked at, the current one
+	 *         included
+	 * 
+	 */
+	public int getLastDepth() {
+		return lastDepth;
+	}
+
+	/**
+	 * 
+	 * This method finds every placement a piece can reach from where it is, by
+	 * rotating it first, letting it down when the rotation doesn't fit, then
+	 * moving it left or right and dropping it
+	 * 
+	 * @param pit The pit
+	 * @param piece The type of the piece
+	 * @param rotation The rotation it is in
+	 * @param x The X coordinate of the piece
+	 * @param y The Y coordinate of the piece
+	 * @param placements Where to put the placements found, see
+	 *            newPlacements()
+	 * @return How many placements were found
+	 * 
+	 */
+	private static int findPlacements(Pit pit, int piece, int rotation, int x, int y, int[] placements) {
+		Point[][] rotations = PieceFactory.getMatrix(piece);
+		int count = 0;
+
+		if (!pit.doesPieceFitAt(rotations[rotation], x, y)) {
+			return 0;
+		}
+
+		for (int turns = 0; turns < rotations.length; ++turns) {
+			int target = (rotation + turns) % rotations.length;
+
+			// The same shape reached in fewer turns was already searched
+			if (isSeen(rotations, rotation, turns)) {
+				continue;
+			}
+
+			// We'll turn the piece as the player would
+			int currentY = y;
+			boolean stuck = false;
+
+			for (int turn = 1; turn <= turns && !stuck; ++turn) {
+				Point[] next = rotations[(rotation + turn) % rotations.length];
+				Point[] current = rotations[(rotation + turn - 1) % rotations.length];
+
+				while (!pit.doesPieceFitAt(next, x, currentY)) {
+					if (!pit.doesPieceFitAt(current, x, currentY - 1)) {
+						stuck = true;
+						break;
+					}
+
+					--currentY;
+				}
+			}
+
+			if (stuck) {
+				continue;
+			}
+
+			// Then every column it can be moved to
+			Point[] matrix = rotations[target];
+
+			for (int column = x; pit.doesPieceFitAt(matrix, column, currentY); --column) {
+				placements[count++] = getPlacement(target, column, currentY);
+			}
+
+			for (int column = x + 1; pit.doesPieceFitAt(matrix, column, currentY); ++column) {
+				placements[count++] = getPlacement(target, column, currentY);
+			}
+		}
+
+		return count;
+	}
+
+	/**
+	 * 
+	 * This method makes room for the placements of a piece
+	 * 
+	 * @param width The width of the pit
+	 * @return An array big enough for every placement of any piece
+	 * 
+	 */
+	private static int[] newPlacements(int width) {
+		// A piece can stick out by up to 3 blocks on either side
+		return new int[4 * (width + 6)];
+	}
+
+	/**
+	 * 
+	 * This method packs a placement
+	 * 
+	 * @param rotation The rotation of the piece
+	 * @param column The column it is dropped in
+	 * @param y The height it is dropped from
+	 * @return The placement
+	 * 
+	 */
+	private static int getPlacement(int rotation, int column, int y) {
+		return (rotation << (2 * FIELD_BITS)) | (y << FIELD_BITS) | (column + COLUMN_OFFSET);
+	}
+
+	/**
+	 * 
+	 * Getter for the rotation of a placement
+	 * 
+	 * @param placement The placement
+	 * @return The rotation of the piece
+	 * 
+	 */
+	private static int getRotation(int placement) {
+		return placement >>> (2 * FIELD_BITS);
+	}
+
+	/**
+	 * 
+	 * Getter for the column of a placement
+	 * 
+	 * @param placement The placement
+	 * @return The X coordinate of the piece
+	 * 
+	 */
+	private static int getColumn(int placement) {
+		return (placement & FIELD_MASK) - COLUMN_OFFSET;
+	}
+
+	/**
+	 * 
+	 * Getter for the height a placement drops the piece from
+	 * 
+	 * @param placement The placement
+	 * @return The Y coordinate the piece is dropped from
+	 * 
+	 */
+	private static int getFromY(int placement) {
+		return (placement >>> FIELD_BITS) & FIELD_MASK;
+	}
+
+	/**
+	 * 
+	 * This method tells if a rotation looks like one reached in fewer turns
+	 * 
+	 * @param rotations The rotations of the piece
+	 * @param rotation The rotation it starts in
+	 * @param turns How many times it is turned
+	 * @return True if fewer turns give the same blocks. False otherwise
+	 * 
+	 */
+	private static boolean isSeen(Point[][] rotations, int rotation, int turns) {
+		Point[] matrix = rotations[(rotation + turns) % rotations.length];
+
+		for (int fewer = 0; fewer < turns; ++fewer) {
+			Point[] other = rotations[(rotation + fewer) % rotations.length];
+			boolean same = true;
+
+			for (int block = 0; block < matrix.length && same; ++block) {
+				same = matrix[block].getX() == other[block].getX() && matrix[block].getY() == other[block].getY();
+			}
+
+			if (same) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 
+	 * This method scores a board
+	 * 
+	 * @param pit The pit
+	 * @return How good it is, the higher the better
+	 * 
+	 */
+	private static double evaluate(Pit pit) {
+		int width = pit.getWidth();
+		int aggregateHeight = 0;
+		int bumpiness = 0;
+		int highest = 0;
+
+		for (int x = 0; x < width; ++x) {
+			int height = pit.getColumnHeight(x);
+
+			aggregateHeight += height;
+			highest = Math.max(highest, height);
+
+			if (x > 0) {
+				bumpiness += Math.abs(height - pit.getColumnHeight(x - 1));
+			}
+		}
+
+		// A hole is an empty block under the top of its column
+		int holes = 0;
+
+		for (int y = 0; y < highest; ++y) {
+			long covered = 0;
+
+			for (int x = 0; x < width; ++x) {
+				if (pit.getColumnHeight(x) > y) {
+					covered |= 1L << x;
+				}
+			}
+
+			holes += Long.bitCount(covered & ~pit.getLine(y));
+		}
+
+		return HEIGHT_WEIGHT * aggregateHeight + HOLES_WEIGHT * holes + BUMPINESS_WEIGHT * bumpiness;
+	}
+
+	/**
+	 * 
+	 * This task searches for the best placement of the current piece
+	 * 
+	 */
+	private class Search extends RecursiveTask<Integer> {
+		private static final long serialVersionUID = 1L;
+
+		// The board, the pieces to place and where the current one is
+		private Pit pit;
+		private int[] pieces;
+		private int rotation;
+		private int x;
+		private int y;
+
+		// The deadline
+		private long deadline;
+
+		/**
+		 * 
+		 * To construct a search we need the game it is for, which is copied
+		 * 
+		 * @param engine The engine
+		 * @param budget How long the search may take, in nanoseconds
+		 * 
+		 */
+		Search(GameEngine engine, long budget) {
+			Pit source = engine.getPit();
+
+			pit = new Pit(source.getWidth(), source.getHeight());
+			pit.copyFrom(source);
+
+			pieces = new int[1 + GameEngine.PREVIEWS];
+			pieces[0] = engine.getCurrentPiece().getType();
+
+			for (int i = 1; i < pieces.length; ++i) {
+				pieces[i] = engine.getPreview(i - 1).getType();
+			}
+
+			rotation = engine.getCurrentPiece().getRotation();
+			x = engine.getPieceX();
+			y = engine.getPieceY();
+			deadline = System.nanoTime() + budget;
+		}
+
+		/**
+		 * 
+		 * This method searches one piece deeper at a time, until the deadline
+		 * or the last piece known
+		 * 
+		 */
+		protected Integer compute() {
+			int[] placements = newPlacements(pit.getWidth());
+			int count = findPlacements(pit, pieces[0], rotation, x, y, placements);
+
+			// Without anywhere to go, the piece is just dropped
+			int best = getPlacement(rotation, x, y);
+
+			for (int depth = 1; depth <= pieces.length; ++depth) {
+				List<Branch> branches = new ArrayList<Branch>();
+
+				for (int i = 0; i < count; ++i) {
+					branches.add(new Branch(pit, pieces, placements[i], depth, deadline));
+				}
+
+				invokeAll(branches);
+
+				// We'll keep the deepest search that finished, the first one
+				// always does since it has no deadline
+				double bestValue = Double.NEGATIVE_INFINITY;
+				int bestPlacement = best;
+				boolean late = false;
+
+				for (Branch branch : branches) {
+					late |= branch.isLate();
+
+					if (branch.join() > bestValue) {
+						bestValue = branch.join();
+						bestPlacement = branch.getPlacement();
+					}
+				}
+
+				if (late) {
+					break;
+				}
+
+				best = bestPlacement;
+				lastDepth = depth;
+
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+
+			return best;
+		}
+	}
+
+	/**
+	 * 
+	 * This task finds the value of placing a piece somewhere: the lines it
+	 * clears and the best the next pieces can do on the board it leaves
+	 * 
+	 */
+	private static class Branch extends RecursiveTask<Double> {
+		private static final long serialVersionUID = 1L;
+
+		// The board before the piece is placed, and the pieces to place
+		private Pit parent;
+		private int[] pieces;
+		private int index;
+
+		// Where the piece goes
+		private int placement;
+
+		// How many pieces the search places, and until when
+		private int depth;
+		private long deadline;
+
+		// Set when the deadline passed before the branch was searched
+		private boolean late = false;
+
+		/**
+		 * 
+		 * To construct a branch for the current piece we need the board, the
+		 * pieces and where the piece goes
+		 * 
+		 * @param parent The board before the piece is placed
+		 * @param pieces The types of the pieces, the current one first
+		 * @param placement Where the current piece goes
+		 * @param depth How many pieces to place
+		 * @param deadline When to give up, a search of the current piece alone
+		 *            never giving up
+		 * 
+		 */
+		Branch(Pit parent, int[] pieces, int placement, int depth, long deadline) {
+			this(parent, pieces, 0, placement, depth, depth == 1 ? Long.MAX_VALUE : deadline);
+		}
+
+		/**
+		 * 
+		 * To construct a branch for any piece we also need which one it is
+		 * 
+		 */
+		private Branch(Pit parent, int[] pieces, int index, int placement, int depth, long deadline) {
+			this.parent = parent;
+			this.pieces = pieces;
+			this.index = index;
+			this.placement = placement;
+			this.depth = depth;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * 
+		 * This method finds the value of the branch
+		 * 
+		 */
+		protected Double compute() {
+			if (deadline != Long.MAX_VALUE && System.nanoTime() >= deadline) {
+				late = true;
+				return 0.0;
+			}
+
+			Pit pit = new Pit(parent.getWidth(), parent.getHeight());
+			pit.copyFrom(parent);
+
+			int lines = place(pit, pieces[index], placement);
+
+			if (index + 1 == depth) {
+				return LINES_WEIGHT * lines + evaluate(pit);
+			}
+
+			// The next piece is dealt at the top middle of the pit
+			int[] placements = newPlacements(pit.getWidth());
+			int count = findPlacements(pit, pieces[index + 1], 0, pit.getWidth() / 2, pit.getHeight() - 1, placements);
+
+			// Which loses the game if it can't be placed
+			double best = Double.NEGATIVE_INFINITY;
+
+			if (depth - index - 1 >= FORK_DEPTH) {
+				List<Branch> branches = new ArrayList<Branch>();
+
+				for (int i = 0; i < count; ++i) {
+					branches.add(new Branch(pit, pieces, index + 1, placements[i], depth, deadline));
+				}
+
+				invokeAll(branches);
+
+				for (Branch branch : branches) {
+					late |= branch.late;
+					best = Math.max(best, branch.join());
+				}
+			}
+			else {
+				for (int i = 0; i < count && !late; ++i) {
+					Branch branch = new Branch(pit, pieces, index + 1, placements[i], depth, deadline);
+
+					best = Math.max(best, branch.compute());
+					late |= branch.late;
+				}
+			}
+
+			return LINES_WEIGHT * lines + best;
+		}
+
+		/**
+		 * 
+		 * This method places a piece and clears the lines it completes
+		 * 
+		 * @param pit The pit
+		 * @param piece The type of the piece
+		 * @param placement Where it goes, as found by findPlacements()
+		 * @return How many lines it cleared
+		 * 
+		 */
+		private static int place(Pit pit, int piece, int placement) {
+			Point[] matrix = PieceFactory.getMatrix(piece)[getRotation(placement)];
+			int x = getColumn(placement);
+			int y = getFromY(placement);
+
+			pit.insertPieceAt(matrix, x, y - pit.getDropDistance(matrix, x, y));
+
+			return pit.destroyCompletedLines();
+		}
+
+		/**
+		 * 
+		 * Getter for the placement
+		 * 
+		 * @return Where the piece of this branch goes
+		 * 
+		 */
+		int getPlacement() {
+			return placement;
+		}
+
+		/**
+		 * 
+		 * This method tells if the deadline passed before the branch was fully
+		 * searched
+		 * 
+		 * @return True if its value can't be trusted. False otherwise
+		 * 
+		 */
+		boolean isLate() {
+			return late;
+		}
+	}
+}
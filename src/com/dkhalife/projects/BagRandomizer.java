@@ -0,0 +1,59 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This randomizer deals the pieces from a shuffled bag holding one of each. A
+ * new bag is shuffled once the last one is empty, so there are never more
+ * than twelve pieces between two pieces of the same type.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class BagRandomizer extends Randomizer {
+	// The bag and how many pieces were dealt from it
+	private int[] bag = new int[PieceFactory.PIECE_TYPES];
+	private int dealt = bag.length;
+
+	@Override
+	public int next() {
+		if (dealt == bag.length) {
+			shuffle();
+		}
+
+		return bag[dealt++];
+	}
+
+	@Override
+	public void copyFrom(Randomizer other) {
+		super.copyFrom(other);
+
+		BagRandomizer bagRandomizer = (BagRandomizer) other;
+		System.arraycopy(bagRandomizer.bag, 0, bag, 0, bag.length);
+		dealt = bagRandomizer.dealt;
+	}
+
+	@Override
+	protected void reset() {
+		dealt = bag.length;
+	}
+
+	/**
+	 * 
+	 * This method fills the bag and shuffles it
+	 * 
+	 */
+	private void shuffle() {
+		for (int i = 0; i < bag.length; ++i) {
+			bag[i] = i;
+		}
+
+		for (int i = bag.length - 1; i > 0; --i) {
+			int j = nextInt(i + 1);
+			int swap = bag[i];
+			bag[i] = bag[j];
+			bag[j] = swap;
+		}
+
+		dealt = 0;
+	}
+}
@@ -0,0 +1,122 @@
+package com.dkhalife.projects;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.font.effects.ColorEffect;
+
+/**
+ * 
+ * This class loads the fonts of the game, each font and size only once so
+ * that all the states share the same glyphs. It can also draw numbers digit
+ * by digit from strings prepared in advance, which keeps the hud from creating
+ * new strings every frame.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class FontService {
+	// The font used throughout the game
+	public static final String DEFAULT_FONT = "res/fonts/ITCKRIST.ttf";
+	public static final int DEFAULT_SIZE = 20;
+
+	// The strings used to draw numbers, the digits followed by the minus sign
+	private static final String[] SYMBOLS = { "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "-" };
+	private static final int MINUS = 10;
+
+	// The fonts loaded so far, by path and size
+	private static Map<String, UnicodeFont> fonts = new HashMap<String, UnicodeFont>();
+
+	// And the width of each symbol for each of them
+	private static Map<UnicodeFont, int[]> symbolWidths = new IdentityHashMap<UnicodeFont, int[]>();
+
+	/**
+	 * 
+	 * Getter for the default font
+	 * 
+	 * @return The font used throughout the game
+	 * @throws SlickException If the font can't be loaded
+	 * 
+	 */
+	public static UnicodeFont getFont() throws SlickException {
+		return getFont(DEFAULT_FONT, DEFAULT_SIZE);
+	}
+
+	/**
+	 * 
+	 * Getter for a font, which is loaded the first time it is asked for
+	 * 
+	 * @param path The path to the TTF file
+	 * @param size The size of the font
+	 * @return The font, with its ASCII glyphs loaded
+	 * @throws SlickException If the font can't be loaded
+	 * 
+	 */
+	@SuppressWarnings("unchecked")
+	public static UnicodeFont getFont(String path, int size) throws SlickException {
+		String key = path + "@" + size;
+		UnicodeFont font = fonts.get(key);
+
+		if (font == null) {
+			font = new UnicodeFont(path, size, true, false);
+			font.getEffects().add(new ColorEffect(java.awt.Color.white));
+			font.addAsciiGlyphs();
+			font.loadGlyphs();
+
+			int[] widths = new int[SYMBOLS.length];
+
+			for (int i = 0; i < SYMBOLS.length; ++i) {
+				widths[i] = font.getWidth(SYMBOLS[i]);
+			}
+
+			fonts.put(key, font);
+			symbolWidths.put(font, widths);
+		}
+
+		return font;
+	}
+
+	/**
+	 * 
+	 * This method draws a number without turning it into a string
+	 * 
+	 * @param font The font, obtained from getFont()
+	 * @param x The X coordinate of the number
+	 * @param y The Y coordinate of the number
+	 * @param value The number
+	 * @param color The color to draw it in
+	 * 
+	 */
+	public static void drawNumber(UnicodeFont font, float x, float y, int value, Color color) {
+		int[] widths = symbolWidths.get(font);
+
+		// We'll work on a long so that the smallest int can be negated
+		long left = value;
+
+		if (left < 0) {
+			font.drawString(x, y, SYMBOLS[MINUS], color);
+			x += widths[MINUS];
+			left = -left;
+		}
+
+		long divisor = 1;
+
+		while (divisor * 10 <= left) {
+			divisor *= 10;
+		}
+
+		// Then we'll draw the digits from the most significant one
+		for (; divisor > 0; divisor /= 10) {
+			int digit = (int) (left / divisor);
+
+			font.drawString(x, y, SYMBOLS[digit], color);
+			x += widths[digit];
+
+			left %= divisor;
+		}
+	}
+}
@@ -0,0 +1,236 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.UnicodeFont;
+
+/**
+ * 
+ * This class times the phases of each frame into histograms, one per phase,
+ * so that we can tell where a stutter comes from. Timing a phase costs two
+ * calls to System.nanoTime() and a few atomic increments, it never allocates
+ * nor locks, and does nothing at all until the profiler is enabled, either
+ * from the start or when the overlay is first shown.
+ * 
+ * The histograms can be shown over the game, with the median, the 99th
+ * percentile and the longest duration of each phase, and can be saved to CSV
+ * files when the game exits.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class FrameProfiler {
+	/**
+	 * 
+	 * The phases of a frame that are timed
+	 * 
+	 */
+	public enum Phase {
+		// The time Slick reports between two updates
+		DELTA,
+
+		// The whole update and render of the current state
+		UPDATE, RENDER,
+
+		// Reading the keys and hearing from the other player
+		INPUT,
+
+		// A step of the engine, and clearing lines within it
+		STEP, LINE_CLEAR,
+
+		// Drawing the pit and its pieces, then the numbers around it
+		RENDER_PIT, RENDER_HUD
+	}
+
+	// The folder the histograms are saved to
+	public static final String DIRECTORY = "profiles";
+
+	// The phases, since Phase.values() makes a new array each time
+	private static final Phase[] PHASES = Phase.values();
+
+	// The colors of the overlay
+	private static final Color BACKGROUND = new Color(0, 0, 0, 180);
+	private static final Color TEXT = Color.white;
+
+	// The size of the overlay
+	private static final int LINE_HEIGHT = 22;
+	private static final int WIDTH = 470;
+
+	// Whether the phases are timed, and whether they are shown
+	private static volatile boolean enabled = false;
+	private static boolean overlayShown = false;
+
+	// A histogram for each phase
+	private static Histogram[] histograms = new Histogram[PHASES.length];
+
+	static {
+		for (int i = 0; i < histograms.length; ++i) {
+			histograms[i] = new Histogram();
+		}
+	}
+
+	/**
+	 * 
+	 * Setter for whether the phases are timed
+	 * 
+	 * @param enabled True to time the phases. False to leave them be
+	 * 
+	 */
+	public static void setEnabled(boolean enabled) {
+		FrameProfiler.enabled = enabled;
+	}
+
+	/**
+	 * 
+	 * This method tells when a phase starts
+	 * 
+	 * @return The time the phase starts, to give to end()
+	 * 
+	 */
+	public static long start() {
+		return enabled ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * 
+	 * This method tells when a phase ends, so that its duration is counted
+	 * 
+	 * @param phase The phase
+	 * @param start The time it started, as returned by start()
+	 * 
+	 */
+	public static void end(Phase phase, long start) {
+		if (enabled) {
+			histograms[phase.ordinal()].record((System.nanoTime() - start) / 1000);
+		}
+	}
+
+	/**
+	 * 
+	 * This method counts the duration of a phase that was timed separately
+	 * 
+	 * @param phase The phase
+	 * @param nanos Its duration, in nanoseconds
+	 * 
+	 */
+	public static void record(Phase phase, long nanos) {
+		if (enabled) {
+			histograms[phase.ordinal()].record(nanos / 1000);
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the histogram of a phase
+	 * 
+	 * @param phase The phase
+	 * @return Its histogram
+	 * 
+	 */
+	public static Histogram getHistogram(Phase phase) {
+		return histograms[phase.ordinal()];
+	}
+
+	/**
+	 * 
+	 * This method shows or hides the overlay, the phases being timed from the
+	 * first time it is shown
+	 * 
+	 */
+	public static void toggleOverlay() {
+		overlayShown = !overlayShown;
+
+		if (overlayShown) {
+			enabled = true;
+		}
+	}
+
+	/**
+	 * 
+	 * This method draws the overlay, if it is shown
+	 * 
+	 * @param g The graphics context
+	 * @param font The font to write with
+	 * @param x The X coordinate of the overlay
+	 * @param y The Y coordinate of the overlay
+	 * 
+	 */
+	public static void renderOverlay(Graphics g, UnicodeFont font, int x, int y) {
+		if (!overlayShown) {
+			return;
+		}
+
+		g.setColor(BACKGROUND);
+		g.fillRect(x, y, WIDTH, (histograms.length + 1) * LINE_HEIGHT + 10);
+
+		y += 5;
+
+		font.drawString(x + 5, y, "us", TEXT);
+		font.drawString(x + 160, y, "p50", TEXT);
+		font.drawString(x + 240, y, "p99", TEXT);
+		font.drawString(x + 320, y, "max", TEXT);
+		font.drawString(x + 400, y, "n", TEXT);
+
+		for (Phase phase : PHASES) {
+			Histogram histogram = histograms[phase.ordinal()];
+			y += LINE_HEIGHT;
+
+			// The numbers are drawn digit by digit so that nothing is allocated
+			font.drawString(x + 5, y, phase.name(), TEXT);
+			FontService.drawNumber(font, x + 160, y, (int) histogram.getPercentile(50), TEXT);
+			FontService.drawNumber(font, x + 240, y, (int) histogram.getPercentile(99), TEXT);
+			FontService.drawNumber(font, x + 320, y, (int) Math.min(histogram.getMax(), Integer.MAX_VALUE), TEXT);
+			FontService.drawNumber(font, x + 400, y, (int) Math.min(histogram.getCount(), Integer.MAX_VALUE), TEXT);
+		}
+	}
+
+	/**
+	 * 
+	 * This method saves the histograms, a summary of each phase in one file
+	 * and the counts of their buckets in another
+	 * 
+	 * @param directory The folder to save them to
+	 * 
+	 */
+	public static void export(File directory) {
+		if (histograms[Phase.DELTA.ordinal()].getCount() == 0) {
+			// There's nothing to save
+			return;
+		}
+
+		directory.mkdirs();
+
+		String name = "profile-" + new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+
+		try (PrintWriter summary = new PrintWriter(new FileWriter(new File(directory, name + ".csv")));
+				PrintWriter buckets = new PrintWriter(new FileWriter(new File(directory, name + "-buckets.csv")))) {
+			summary.println("phase,count,mean_us,p50_us,p90_us,p99_us,p999_us,max_us");
+			buckets.println("phase,from_us,to_us,count");
+
+			for (Phase phase : PHASES) {
+				Histogram histogram = histograms[phase.ordinal()];
+
+				summary.println(phase.name() + "," + histogram.getCount() + "," + histogram.getMean() + "," + histogram.getPercentile(50) + ","
+						+ histogram.getPercentile(90) + "," + histogram.getPercentile(99) + "," + histogram.getPercentile(99.9) + ","
+						+ histogram.getMax());
+
+				for (int bucket = 0; bucket < Histogram.getBucketCount(); ++bucket) {
+					long count = histogram.getCount(bucket);
+
+					if (count > 0) {
+						buckets.println(phase.name() + "," + Histogram.getBucketFrom(bucket) + "," + Histogram.getBucketTo(bucket) + "," + count);
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("WARNING: The profile could not be saved to " + directory + ": " + e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,880 @@
+package com.dkhalife.projects;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 
+ * This class implements the rules of the game: spawning pieces, gravity,
+ * moves, line clears, scoring and levels. It knows nothing about the screen,
+ * the keyboard or the speakers: it is driven by abstract inputs and elapsed
+ * time through its step method and reports what happens to a listener. This
+ * is what lets the same rules run without any display.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class GameEngine {
+	// These are the inputs the engine understands, they can be combined
+	public static final int INPUT_NONE = 0;
+	public static final int INPUT_LEFT = 1;
+	public static final int INPUT_RIGHT = 1 << 1;
+	public static final int INPUT_DOWN = 1 << 2;
+	public static final int INPUT_ROTATE = 1 << 3;
+	public static final int INPUT_DROP = 1 << 4;
+	public static final int INPUT_PAUSE = 1 << 5;
+	public static final int INPUT_TOGGLE_SHADOW = 1 << 6;
+
+	// The keys pressed since the last step can be told apart from the ones
+	// only held, with the same bits shifted by this much
+	public static final int PRESSED_SHIFT = 8;
+	private static final int INPUT_KEYS = (1 << PRESSED_SHIFT) - 1;
+
+	// Holding left or right moves the piece once, then again after the auto
+	// shift delay, then every auto repeat period, in milliseconds
+	public final static int DEFAULT_AUTO_SHIFT_DELAY = 170;
+	public final static int DEFAULT_AUTO_REPEAT_RATE = 50;
+
+	// Holding down moves the piece down this often, in milliseconds
+	private final static int SOFT_DROP_RATE = 50;
+
+	// The length of a step when the engine runs at a fixed rate, in
+	// milliseconds, 250 steps per second being short enough for the keys
+	// pressed to be felt at once
+	public final static int TICK_LENGTH = 4;
+
+	// How many upcoming pieces are known in advance
+	public final static int PREVIEWS = 3;
+
+	// This is used to give each game its own seed
+	private final static AtomicLong seedSequence = new AtomicLong(System.nanoTime());
+
+	// We'll keep track of the pit
+	private Pit pit;
+
+	// We need a score and a multiplier
+	private int score;
+	private int scoreGained = 0;
+	private int multiplier = 1;
+	private boolean comboStreak = false;
+
+	// And the current (ordinal) level and scores to reach to pass to the next
+	// level
+	private int level = 0;
+	private int[] milestones = { 2000, 5000, 10000, 30000, 50000, 100000, 150000, 350000, 600000, 1000000 };
+
+	// The piece falls on its own each time this timer runs out
+	private int dropTimer = 0;
+	private int[] dropTimeouts = { 1000, 900, 850, 800, 750, 700, 650, 600, 550, 500 };
+
+	// The keys held at the last step, and the ones pressed that weren't
+	// handled yet since there was no piece to move
+	private int lastKeys = INPUT_NONE;
+	private int pendingPresses = INPUT_NONE;
+
+	// The sideways moves repeat while a direction is held, -1 being left
+	private int autoShiftDelay = DEFAULT_AUTO_SHIFT_DELAY;
+	private int autoRepeatRate = DEFAULT_AUTO_REPEAT_RATE;
+	private int shiftDirection = 0;
+	private int shiftTimer = 0;
+	private int softDropTimer = 0;
+
+	// We'll also keep an eye on the current and next piece, which are dealt by
+	// a seeded queue
+	private RandomizerType randomizerType;
+	private PieceQueue queue;
+	private long seed;
+	private Piece nextPiece = null;
+	private Piece currentPiece = null;
+	private int pieceCount = 0;
+
+	// The coordinates for the current piece
+	private int pieceX;
+	private int pieceY;
+	private int shadowPieceY;
+
+	// Do we want shadow?
+	private boolean enableShadow = true;
+
+	// The garbage lines sent by an opponent, added before the next piece
+	private int pendingGarbage = 0;
+
+	// We'll keep track of the game logic with a state machine
+	private State currentState = State.START_GAME;
+
+	public enum State {
+		START_GAME, NEW_PIECE, MOVING_PIECE, LINE_DESTRUCTION, PAUSE_GAME, GAME_OVER
+	}
+
+	// And we'll let someone know about what happens
+	private GameListener listener = null;
+
+	/**
+	 * 
+	 * To construct an engine, one needs to know the size of its pit. The
+	 * pieces will be dealt from a 7-bag.
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * 
+	 */
+	public GameEngine(int width, int height) {
+		this(width, height, RandomizerType.BAG);
+	}
+
+	/**
+	 * 
+	 * To construct an engine, one needs to know the size of its pit and how to
+	 * pick its pieces
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * @param randomizerType The kind of randomizer that picks the pieces
+	 * 
+	 */
+	public GameEngine(int width, int height, RandomizerType randomizerType) {
+		this.randomizerType = randomizerType;
+
+		pit = new Pit(width, height);
+		queue = new PieceQueue(randomizerType.create(), PREVIEWS);
+		seed = nextSeed();
+	}
+
+	/**
+	 * 
+	 * Setter for the listener
+	 * 
+	 * @param listener The listener to notify of the game events, or null
+	 * 
+	 */
+	public void setListener(GameListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 
+	 * This method resets the state machine so that the next step starts a new
+	 * game with a new seed
+	 * 
+	 */
+	public void reset() {
+		reset(nextSeed());
+	}
+
+	/**
+	 * 
+	 * This method resets the state machine so that the next step starts a new
+	 * game. The same seed always deals the same pieces.
+	 * 
+	 * @param seed The seed for the pieces of the new game
+	 * 
+	 */
+	public void reset(long seed) {
+		this.seed = seed;
+		currentState = State.START_GAME;
+
+		// A key held from before only counts once it is pressed again
+		lastKeys = INPUT_NONE;
+	}
+
+	/**
+	 * 
+	 * Setter for how the sideways moves repeat while a direction is held
+	 * 
+	 * @param autoShiftDelay How long the direction is held before it repeats,
+	 *            in milliseconds
+	 * @param autoRepeatRate How long between two repeated moves, in
+	 *            milliseconds, 0 moving the piece as far as it goes at once
+	 * 
+	 */
+	public void setAutoShift(int autoShiftDelay, int autoRepeatRate) {
+		if (autoShiftDelay < 0 || autoRepeatRate < 0) {
+			throw new IllegalArgumentException("The auto shift delay and repeat rate can't be negative");
+		}
+
+		this.autoShiftDelay = autoShiftDelay;
+		this.autoRepeatRate = autoRepeatRate;
+	}
+
+	/**
+	 * 
+	 * This method comes up with a seed for a new game
+	 * 
+	 * @return The seed
+	 * 
+	 */
+	private static long nextSeed() {
+		return seedSequence.addAndGet(0x9E3779B97F4A7C15L) ^ System.nanoTime();
+	}
+
+	/**
+	 * 
+	 * This method turns this engine into a copy of another one, so that both
+	 * play the same game from now on. The listener isn't copied.
+	 * 
+	 * @param other The engine to copy, it must have the same pit size and
+	 *            randomizer type
+	 * 
+	 */
+	public void copyFrom(GameEngine other) {
+		if (other.randomizerType != randomizerType) {
+			throw new IllegalArgumentException("Only an engine with the same randomizer can be copied");
+		}
+
+		pit.copyFrom(other.pit);
+		queue.copyFrom(other.queue);
+		seed = other.seed;
+		currentPiece = queue.current();
+		nextPiece = queue.peek(0);
+		pieceCount = other.pieceCount;
+
+		score = other.score;
+		scoreGained = other.scoreGained;
+		multiplier = other.multiplier;
+		comboStreak = other.comboStreak;
+		level = other.level;
+
+		dropTimer = other.dropTimer;
+		lastKeys = other.lastKeys;
+		pendingPresses = other.pendingPresses;
+		autoShiftDelay = other.autoShiftDelay;
+		autoRepeatRate = other.autoRepeatRate;
+		shiftDirection = other.shiftDirection;
+		shiftTimer = other.shiftTimer;
+		softDropTimer = other.softDropTimer;
+
+		pieceX = other.pieceX;
+		pieceY = other.pieceY;
+		shadowPieceY = other.shadowPieceY;
+		enableShadow = other.enableShadow;
+		pendingGarbage = other.pendingGarbage;
+		currentState = other.currentState;
+	}
+
+	/**
+	 * 
+	 * This method makes the opponent's garbage lines come in before the next
+	 * piece
+	 * 
+	 * @param lines The number of garbage lines
+	 * 
+	 */
+	public void addGarbage(int lines) {
+		pendingGarbage += lines;
+	}
+
+	/**
+	 * 
+	 * This method picks the column left empty in the garbage lines, from the
+	 * seed so that the same game always gets the same holes
+	 * 
+	 * @return The column of the hole
+	 * 
+	 */
+	private int garbageHole() {
+		long mix = (seed + pieceCount) * 0x9E3779B97F4A7C15L;
+
+		return (int) ((mix >>> 33) % pit.getWidth());
+	}
+
+	/**
+	 * 
+	 * This method advances the game by one step
+	 * 
+	 * @param input The inputs currently held, a combination of the INPUT_
+	 *            constants, along with the ones pressed since the last step
+	 *            shifted by PRESSED_SHIFT. A key found held that wasn't at
+	 *            the last step counts as pressed either way.
+	 * @param deltaT The time elapsed since the last step, in milliseconds
+	 * 
+	 */
+	public void step(int input, int deltaT) {
+		// We'll tell the keys pressed from the ones held, keeping the presses
+		// until there is a piece to move
+		int keys = input & INPUT_KEYS;
+
+		pendingPresses |= ((input >>> PRESSED_SHIFT) | (keys & ~lastKeys)) & INPUT_KEYS;
+		lastKeys = keys;
+
+		// It's just a matter of doing the right action at the right state
+		switch (currentState) {
+			case START_GAME:
+				// Here we'll just empty our pit and shuffle the pieces
+				pit.clear();
+				queue.reset(seed);
+				currentPiece = null;
+				nextPiece = queue.peek(0);
+				pieceCount = 0;
+
+				// Reset the score and level
+				score = 0;
+				level = 0;
+				scoreGained = 0;
+				multiplier = level + 1;
+				comboStreak = false;
+
+				// And reset the timers
+				dropTimer = getDropTimeout();
+				pendingPresses = INPUT_NONE;
+				shiftDirection = 0;
+				shiftTimer = 0;
+				softDropTimer = 0;
+				pendingGarbage = 0;
+
+				// And move to the next state
+				currentState = State.NEW_PIECE;
+				fire(GameEvent.GAME_START);
+			break;
+
+			case NEW_PIECE:
+				// The garbage comes in between two pieces
+				if (pendingGarbage > 0) {
+					pit.addGarbage(pendingGarbage, garbageHole());
+					pendingGarbage = 0;
+				}
+
+				// Here we'll need to generate a new piece
+				generateNewPiece();
+
+				// And find the location of its shadow
+				calculateShadowPiece();
+			break;
+
+			case MOVING_PIECE:
+				// Here we'll just move the piece
+				movePiece(keys, deltaT);
+
+				// And find the location of its shadow
+				calculateShadowPiece();
+			break;
+
+			case LINE_DESTRUCTION:
+				// Here we'll check if any lines are full
+				checkForFullLines();
+
+				// And move to the next state
+				currentState = State.NEW_PIECE;
+			break;
+
+			case PAUSE_GAME:
+				if ((pendingPresses & INPUT_PAUSE) != 0) {
+					currentState = State.MOVING_PIECE;
+				}
+
+				// Nothing else happens during a pause
+				pendingPresses = INPUT_NONE;
+			break;
+
+			case GAME_OVER:
+				// Nothing happens anymore until the engine is reset
+			break;
+		}
+	}
+
+	/**
+	 * 
+	 * This method notifies the listener of an event
+	 * 
+	 * @param event The event that occurred
+	 * 
+	 */
+	private void fire(GameEvent event) {
+		if (listener != null) {
+			listener.onGameEvent(this, event);
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for how long the piece waits before falling at the current level
+	 * 
+	 * @return The drop timeout, the last level's once the last milestone is
+	 *         passed
+	 * 
+	 */
+	private int getDropTimeout() {
+		return dropTimeouts[Math.min(level, dropTimeouts.length - 1)];
+	}
+
+	/**
+	 * 
+	 * This method finds where the current piece would land if dropped
+	 * 
+	 */
+	private void calculateShadowPiece() {
+		// The pit knows the height of its columns, so we don't need to step the
+		// piece down line by line
+		shadowPieceY = pieceY - pit.getDropDistance(currentPiece.getMatrix(), pieceX, pieceY);
+	}
+
+	/**
+	 * 
+	 * This method checks for valid piece movements and drops the piece at a
+	 * regular time interval
+	 * 
+	 * @param keys The inputs currently held
+	 * @param deltaT The time difference between the last update
+	 * 
+	 */
+	private void movePiece(int keys, int deltaT) {
+		int pressed = pendingPresses;
+		pendingPresses = INPUT_NONE;
+
+		// Is it time to drop the piece?
+		dropTimer -= deltaT;
+
+		if (dropTimer < 0) {
+			// Reset the drop timeout
+			dropTimer = getDropTimeout();
+
+			// Ok it is, but does the pit fit below?
+			if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY - 1)) {
+				--pieceY;
+				fire(GameEvent.PIECE_FALL);
+			}
+			else {
+				// The keys will move the next piece
+				pit.insertPieceAt(currentPiece, pieceX, pieceY);
+				currentState = State.LINE_DESTRUCTION;
+				return;
+			}
+		}
+
+		// Are we trying to pause the game ?
+		if ((pressed & INPUT_PAUSE) != 0) {
+			currentState = State.PAUSE_GAME;
+			return;
+		}
+
+		// Are we toggling shadow?
+		if ((pressed & INPUT_TOGGLE_SHADOW) != 0) {
+			enableShadow = !enableShadow;
+		}
+
+		// Are we going left or right
+		autoShift(keys, pressed, deltaT);
+
+		// Are we going down
+		if ((pressed & INPUT_DOWN) != 0) {
+			softDropTimer = SOFT_DROP_RATE;
+
+			if (!softDrop()) {
+				return;
+			}
+		}
+		else if ((keys & INPUT_DOWN) != 0) {
+			softDropTimer -= deltaT;
+
+			while (softDropTimer <= 0) {
+				softDropTimer += SOFT_DROP_RATE;
+
+				if (!softDrop()) {
+					return;
+				}
+			}
+		}
+
+		// Did we press up
+		if ((pressed & INPUT_ROTATE) != 0) {
+			// We'll try to rotate
+			if (pit.doesPieceFitAt(currentPiece.getMatrix(currentPiece.getRotation() + 1), pieceX, pieceY)) {
+				currentPiece.rotate();
+				fire(GameEvent.PIECE_ROTATE);
+			}
+		}
+
+		// Did we press space
+		if ((pressed & INPUT_DROP) != 0) {
+			// Drop the piece, from where it is now since it may have moved
+			// after its shadow was found
+			pieceY -= pit.getDropDistance(currentPiece.getMatrix(), pieceX, pieceY);
+			pit.insertPieceAt(currentPiece, pieceX, pieceY);
+			currentState = State.LINE_DESTRUCTION;
+			fire(GameEvent.PIECE_TOUCH);
+		}
+	}
+
+	/**
+	 * 
+	 * This method moves the piece left or right: once when a direction is
+	 * pressed, then repeatedly while it is held, at a pace that only depends
+	 * on the time elapsed and not on how often we are stepped
+	 * 
+	 * @param keys The inputs currently held
+	 * @param pressed The inputs pressed since the last move
+	 * @param deltaT The time difference between the last update
+	 * 
+	 */
+	private void autoShift(int keys, int pressed, int deltaT) {
+		if ((pressed & (INPUT_LEFT | INPUT_RIGHT)) != 0) {
+			// The last direction pressed wins, right if both were
+			shiftDirection = (pressed & INPUT_RIGHT) != 0 ? 1 : -1;
+			shiftTimer = autoShiftDelay;
+			shiftPiece(shiftDirection);
+			return;
+		}
+
+		if (shiftDirection == 0) {
+			return;
+		}
+
+		if ((keys & (shiftDirection < 0 ? INPUT_LEFT : INPUT_RIGHT)) == 0) {
+			// Letting go of a direction gives way to the other one if it is
+			// still held, after the delay again
+			shiftDirection = (keys & (shiftDirection < 0 ? INPUT_RIGHT : INPUT_LEFT)) != 0 ? -shiftDirection : 0;
+			shiftTimer = autoShiftDelay;
+			return;
+		}
+
+		shiftTimer -= deltaT;
+
+		while (shiftTimer <= 0) {
+			// Against a wall, the next move happens as soon as there is room
+			if (!shiftPiece(shiftDirection)) {
+				shiftTimer = 0;
+				break;
+			}
+
+			shiftTimer += autoRepeatRate;
+		}
+	}
+
+	/**
+	 * 
+	 * This method moves the piece by one column if it fits
+	 * 
+	 * @param direction -1 to go left, 1 to go right
+	 * @return True if the piece moved. False otherwise
+	 * 
+	 */
+	private boolean shiftPiece(int direction) {
+		if (!pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX + direction, pieceY)) {
+			return false;
+		}
+
+		pieceX += direction;
+		fire(GameEvent.PIECE_MOVE);
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * This method moves the piece down by one line, or locks it if it can't go
+	 * any lower
+	 * 
+	 * @return True if the piece moved. False if it was locked
+	 * 
+	 */
+	private boolean softDrop() {
+		if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY - 1)) {
+			--pieceY;
+			return true;
+		}
+
+		// We tried to go down but we can't anymore so lets block this piece
+		// and move on
+		pit.insertPieceAt(currentPiece, pieceX, pieceY);
+		currentState = State.LINE_DESTRUCTION;
+		fire(GameEvent.PIECE_TOUCH);
+
+		return false;
+	}
+
+	/**
+	 * 
+	 * This method generates a new piece
+	 * 
+	 */
+	private void generateNewPiece() {
+		// We'll deal the next piece
+		currentPiece = queue.next();
+		nextPiece = queue.peek(0);
+		++pieceCount;
+
+		// We'll reset the position of the piece to the top middle of the pit
+		pieceX = pit.getWidth() / 2;
+		pieceY = pit.getHeight() - 1;
+
+		// If the piece fits there
+		if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY)) {
+			currentState = State.MOVING_PIECE;
+		}
+		else {
+			// Otherwise it's game over
+			currentState = State.GAME_OVER;
+			fire(GameEvent.GAME_OVER);
+		}
+	}
+
+	/**
+	 * 
+	 * This method checks to see if there are any full lines and clears them
+	 * while adding points to the player's score
+	 * 
+	 */
+	private void checkForFullLines() {
+		// Only the lines the piece landed on can be full, and the pit already
+		// knows which of them are
+		int linesDestroyed = pit.destroyCompletedLines();
+
+		// Depending on how many lines were destroyed we give out a score bonus
+		// and let the listener know
+		switch (linesDestroyed) {
+			case 0:
+				score += 10;
+
+				// Reset multiplier to minimum
+				multiplier = level + 1;
+				comboStreak = false;
+			break;
+
+			case 1:
+				scoreGained = 100;
+				fire(GameEvent.SINGLE);
+			break;
+
+			case 2:
+				scoreGained = 300;
+				fire(GameEvent.DOUBLE);
+			break;
+
+			case 3:
+				scoreGained = 600;
+				fire(GameEvent.TRIPLE);
+			break;
+
+			case 4:
+				scoreGained = 1000;
+				fire(GameEvent.TETRIS);
+			break;
+		}
+
+		if (linesDestroyed > 0) {
+			// Increase multiplier on combo
+			if (comboStreak) {
+				multiplier += 1;
+			}
+
+			scoreGained *= multiplier;
+			score += scoreGained;
+
+			if (level < milestones.length && score > milestones[level]) {
+				++level;
+				fire(GameEvent.LEVEL_UP);
+			}
+
+			comboStreak = true;
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the pit
+	 * 
+	 * @return The pit
+	 * 
+	 */
+	public Pit getPit() {
+		return pit;
+	}
+
+	/**
+	 * 
+	 * Getter for the state
+	 * 
+	 * @return The current state of the state machine
+	 * 
+	 */
+	public State getState() {
+		return currentState;
+	}
+
+	/**
+	 * 
+	 * Getter for the current piece
+	 * 
+	 * @return The piece being moved, or null if the game hasn't started
+	 * 
+	 */
+	public Piece getCurrentPiece() {
+		return currentPiece;
+	}
+
+	/**
+	 * 
+	 * Getter for the next piece
+	 * 
+	 * @return The piece that will follow the current one
+	 * 
+	 */
+	public Piece getNextPiece() {
+		return nextPiece;
+	}
+
+	/**
+	 * 
+	 * Getter for the piece count
+	 * 
+	 * @return How many pieces were dealt since the game started
+	 * 
+	 */
+	public int getPieceCount() {
+		return pieceCount;
+	}
+
+	/**
+	 * 
+	 * Getter for an upcoming piece
+	 * 
+	 * @param index 0 for the next piece, up to PREVIEWS - 1
+	 * @return The upcoming piece
+	 * 
+	 */
+	public Piece getPreview(int index) {
+		return queue.peek(index);
+	}
+
+	/**
+	 * 
+	 * Getter for the seed
+	 * 
+	 * @return The seed of the current game
+	 * 
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * 
+	 * Getter for the randomizer type
+	 * 
+	 * @return The kind of randomizer that picks the pieces
+	 * 
+	 */
+	public RandomizerType getRandomizerType() {
+		return randomizerType;
+	}
+
+	/**
+	 * 
+	 * Getter for the current piece's X coordinate
+	 * 
+	 * @return The X coordinate of the current piece
+	 * 
+	 */
+	public int getPieceX() {
+		return pieceX;
+	}
+
+	/**
+	 * 
+	 * Getter for the current piece's Y coordinate
+	 * 
+	 * @return The Y coordinate of the current piece
+	 * 
+	 */
+	public int getPieceY() {
+		return pieceY;
+	}
+
+	/**
+	 * 
+	 * Getter for the shadow's Y coordinate
+	 * 
+	 * @return The Y coordinate where the current piece would land
+	 * 
+	 */
+	public int getShadowPieceY() {
+		return shadowPieceY;
+	}
+
+	/**
+	 * 
+	 * Getter for the shadow toggle
+	 * 
+	 * @return True if the player wants to see the shadow. False otherwise
+	 * 
+	 */
+	public boolean isShadowEnabled() {
+		return enableShadow;
+	}
+
+	/**
+	 * 
+	 * Getter for the auto shift delay
+	 * 
+	 * @return How long a direction is held before it repeats, in milliseconds
+	 * 
+	 */
+	public int getAutoShiftDelay() {
+		return autoShiftDelay;
+	}
+
+	/**
+	 * 
+	 * Getter for the auto repeat rate
+	 * 
+	 * @return How long between two repeated sideways moves, in milliseconds
+	 * 
+	 */
+	public int getAutoRepeatRate() {
+		return autoRepeatRate;
+	}
+
+	/**
+	 * 
+	 * Getter for the score
+	 * 
+	 * @return The score
+	 * 
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * 
+	 * Getter for the last score bonus
+	 * 
+	 * @return The score gained with the last line clear
+	 * 
+	 */
+	public int getScoreGained() {
+		return scoreGained;
+	}
+
+	/**
+	 * 
+	 * Getter for the multiplier
+	 * 
+	 * @return The multiplier
+	 * 
+	 */
+	public int getMultiplier() {
+		return multiplier;
+	}
+
+	/**
+	 * 
+	 * Getter for the level
+	 * 
+	 * @return The current (ordinal) level
+	 * 
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * 
+	 * Getter for the milestone
+	 * 
+	 * @return The score to reach to pass to the next level, or -1 if the last
+	 *         level was reached
+	 * 
+	 */
+	public int getMilestone() {
+		return level < milestones.length ? milestones[level] : -1;
+	}
+}
@@ -0,0 +1,35 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * The events emitted by the game engine as the game goes on. Each event shares
+ * its name with the sound resource that goes with it.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public enum GameEvent {
+	// The game has just been (re)started
+	GAME_START,
+
+	// The current piece moved one line down on its own
+	PIECE_FALL,
+
+	// The current piece moved left or right
+	PIECE_MOVE,
+
+	// The current piece rotated
+	PIECE_ROTATE,
+
+	// The current piece was dropped or pushed into the pit
+	PIECE_TOUCH,
+
+	// One, two, three or four lines were cleared at once
+	SINGLE, DOUBLE, TRIPLE, TETRIS,
+
+	// The player reached the next level
+	LEVEL_UP,
+
+	// No new piece fits in the pit anymore
+	GAME_OVER
+}
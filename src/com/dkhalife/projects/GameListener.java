@@ -0,0 +1,21 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * A game listener is notified of everything worth hearing or showing that
+ * happens inside the game engine
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public interface GameListener {
+	/**
+	 * 
+	 * This method gets called by the engine whenever an event occurs
+	 * 
+	 * @param engine The engine in which the event occurred
+	 * @param event The event that occurred
+	 * 
+	 */
+	void onGameEvent(GameEngine engine, GameEvent event);
+}
@@ -0,0 +1,326 @@
+package com.dkhalife.projects;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * This class hosts many games at once for clients connecting over TCP. A
+ * single thread accepts the clients and reads their messages through a
+ * selector, while the sessions are split among a few shards. Each shard steps
+ * all of its sessions once per tick on a small pool of threads, so that the
+ * number of threads doesn't grow with the number of players.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class GameServer implements Runnable {
+	// The most sessions a server hosts unless told otherwise
+	public static final int DEFAULT_MAX_SESSIONS = 10000;
+
+	// The length of a step, in milliseconds. The games hosted here don't
+	// need the short steps of a local game, the clients only sending the keys
+	// they hold over the network.
+	public static final int TICK_LENGTH = 25;
+
+	// The socket clients connect to, and the selector watching it all
+	private ServerSocketChannel server;
+	private Selector selector;
+
+	// The shards, and the threads stepping them
+	private Shard[] shards;
+	private ScheduledExecutorService stepper;
+	private int nextShard = 0;
+
+	// How many sessions are open, and how many may be
+	private AtomicInteger sessionCount = new AtomicInteger();
+	private int maxSessions;
+
+	/**
+	 * 
+	 * A shard is a share of the sessions stepped together by one thread at a
+	 * time
+	 * 
+	 */
+	private class Shard implements Runnable {
+		// The sessions accepted since the last tick
+		private Queue<GameSession> arrivals = new ConcurrentLinkedQueue<>();
+
+		// And the sessions being played
+		private List<GameSession> sessions = new ArrayList<>();
+
+		// How many sessions were stepped so far
+		private volatile long steps = 0;
+
+		public void run() {
+			GameSession arrival;
+
+			while ((arrival = arrivals.poll()) != null) {
+				sessions.add(arrival);
+			}
+
+			long stepped = 0;
+
+			for (int i = 0; i < sessions.size();) {
+				GameSession session = sessions.get(i);
+
+				if (!session.isClosed()) {
+					// A session that fails is closed, the others on the shard
+					// keep playing
+					try {
+						session.step(TICK_LENGTH);
+					} catch (RuntimeException e) {
+						System.out.println("WARNING: A session failed and was closed: " + e);
+						session.close();
+					}
+
+					++stepped;
+				}
+
+				if (session.isClosed()) {
+					// We'll move the last session in its place
+					sessions.set(i, sessions.get(sessions.size() - 1));
+					sessions.remove(sessions.size() - 1);
+					sessionCount.decrementAndGet();
+				}
+				else {
+					++i;
+				}
+			}
+
+			steps += stepped;
+		}
+
+		public void close() {
+			GameSession arrival;
+
+			while ((arrival = arrivals.poll()) != null) {
+				sessions.add(arrival);
+			}
+
+			for (GameSession session : sessions) {
+				session.close();
+			}
+
+			sessions.clear();
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a server we need the port to listen on and how much it can
+	 * take
+	 * 
+	 * @param port The port to listen on, 0 for any free port
+	 * @param threads The number of threads stepping the sessions
+	 * @param maxSessions The most sessions to host, the clients past that are
+	 *            turned away
+	 * @throws IOException If the port can't be listened on
+	 * 
+	 */
+	public GameServer(int port, int threads, int maxSessions) throws IOException {
+		this.maxSessions = maxSessions;
+
+		selector = Selector.open();
+		server = ServerSocketChannel.open();
+		server.configureBlocking(false);
+		server.bind(new InetSocketAddress(port));
+		server.register(selector, SelectionKey.OP_ACCEPT);
+
+		// We'll have a few shards per thread so that they even out
+		shards = new Shard[threads * 4];
+
+		for (int i = 0; i < shards.length; ++i) {
+			shards[i] = new Shard();
+		}
+
+		stepper = new ScheduledThreadPoolExecutor(threads, new ThreadFactory() {
+			private int count = 0;
+
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Game stepper " + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method serves the clients until the server is stopped
+	 * 
+	 */
+	public void run() {
+		for (Shard shard : shards) {
+			stepper.scheduleAtFixedRate(shard, TICK_LENGTH, TICK_LENGTH, TimeUnit.MILLISECONDS);
+		}
+
+		try {
+			while (selector.isOpen()) {
+				selector.select();
+
+				if (!selector.isOpen()) {
+					break;
+				}
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					try {
+						if (key.isAcceptable()) {
+							accept();
+						}
+						else if (key.isReadable()) {
+							GameSession session = (GameSession) key.attachment();
+							session.read();
+
+							if (session.isClosed()) {
+								key.cancel();
+							}
+						}
+					} catch (CancelledKeyException e) {
+						// The session was closed by its shard meanwhile
+					}
+				}
+			}
+		} catch (IOException e) {
+			System.out.println("ERROR: The server stopped: " + e.getMessage());
+		} catch (ClosedSelectorException e) {
+			// The server was stopped
+		}
+
+		// Once the shards are done, we'll drop their clients
+		stepper.shutdownNow();
+
+		try {
+			stepper.awaitTermination(1, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		for (Shard shard : shards) {
+			shard.close();
+		}
+	}
+
+	/**
+	 * 
+	 * This method accepts a client and gives it a session
+	 * 
+	 * @throws IOException If the server socket was closed
+	 * 
+	 */
+	private void accept() throws IOException {
+		SocketChannel channel;
+
+		try {
+			channel = server.accept();
+		} catch (ClosedChannelException e) {
+			throw e;
+		} catch (IOException e) {
+			// Say we ran out of file descriptors, the clients already there
+			// shouldn't suffer from it
+			System.out.println("WARNING: A client could not be accepted: " + e.getMessage());
+			return;
+		}
+
+		if (channel == null) {
+			return;
+		}
+
+		// There's only so much room
+		if (sessionCount.get() >= maxSessions) {
+			channel.close();
+			return;
+		}
+
+		GameSession session = new GameSession(channel);
+
+		try {
+			channel.configureBlocking(false);
+			channel.socket().setTcpNoDelay(true);
+			channel.register(selector, SelectionKey.OP_READ, session);
+		} catch (IOException e) {
+			session.close();
+			return;
+		}
+
+		sessionCount.incrementAndGet();
+
+		shards[nextShard].arrivals.add(session);
+		nextShard = (nextShard + 1) % shards.length;
+	}
+
+	/**
+	 * 
+	 * This method stops the server and drops all its clients
+	 * 
+	 */
+	public void stop() {
+		try {
+			selector.close();
+			server.close();
+		} catch (IOException e) {
+			// We're stopping anyway
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the port
+	 * 
+	 * @return The port the server listens on
+	 * 
+	 */
+	public int getPort() {
+		return server.socket().getLocalPort();
+	}
+
+	/**
+	 * 
+	 * Getter for the number of sessions
+	 * 
+	 * @return How many sessions are open
+	 * 
+	 */
+	public int getSessionCount() {
+		return sessionCount.get();
+	}
+
+	/**
+	 * 
+	 * Getter for the number of steps
+	 * 
+	 * @return How many session steps were played since the server started
+	 * 
+	 */
+	public long getStepCount() {
+		long steps = 0;
+
+		for (Shard shard : shards) {
+			steps += shard.steps;
+		}
+
+		return steps;
+	}
+}
@@ -0,0 +1,309 @@
+package com.dkhalife.projects;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * 
+ * A game session is a game played by one client of the game server. It owns
+ * its engine and its buffers, all sized once, so that every session costs the
+ * same memory however long it lasts.
+ * 
+ * The messages of the client are read by the thread of the server, which only
+ * leaves them in volatile fields. Everything else, stepping the engine and
+ * writing to the client, happens on the thread of the shard the session
+ * belongs to.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class GameSession implements GameListener {
+	// The size of the pit in the game
+	private static final int WIDTH = 10;
+	private static final int HEIGHT = 20;
+
+	// How many bytes can wait to be read or sent, a client whose messages
+	// don't fit is dropped
+	private static final int READ_BUFFER_SIZE = 64;
+	private static final int WRITE_BUFFER_SIZE = 2048;
+
+	// The names are sent in ASCII
+	private static final Charset ASCII = Charset.forName("US-ASCII");
+
+	// The client
+	private SocketChannel channel;
+
+	// The game being played
+	private GameEngine engine = new GameEngine(WIDTH, HEIGHT);
+	private boolean playing = false;
+
+	// The score of the game that just ended, until a name goes with it
+	private int lastScore = -1;
+
+	// What the client asked for, left by the server thread for the shard
+	private volatile int input = GameEngine.INPUT_NONE;
+	private volatile boolean startRequested = false;
+	private volatile boolean scoresRequested = false;
+	private volatile String name = null;
+	private volatile boolean closed = false;
+
+	// The bytes read but not handled yet, and the bytes not sent yet
+	private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+
+	// The name being read
+	private byte[] nameBytes = new byte[Protocol.NAME_LENGTH];
+
+	/**
+	 * 
+	 * To construct a session we only need the client it is played by
+	 * 
+	 * @param channel The connection to the client, in non-blocking mode
+	 * 
+	 */
+	public GameSession(SocketChannel channel) {
+		this.channel = channel;
+
+		engine.setListener(this);
+	}
+
+	/**
+	 * 
+	 * This method reads what the client sent, it is called by the server
+	 * thread when the channel is readable
+	 * 
+	 */
+	public void read() {
+		try {
+			if (channel.read(readBuffer) < 0) {
+				close();
+				return;
+			}
+		} catch (IOException e) {
+			close();
+			return;
+		}
+
+		readBuffer.flip();
+
+		while (readBuffer.hasRemaining()) {
+			byte type = readBuffer.get(readBuffer.position());
+			int size = Protocol.getPayloadSize(type);
+
+			if (size < 0) {
+				// The client doesn't speak our protocol
+				close();
+				return;
+			}
+
+			if (readBuffer.remaining() < 1 + size) {
+				// The rest of the message hasn't arrived yet
+				break;
+			}
+
+			readBuffer.get();
+			handle(type);
+		}
+
+		readBuffer.compact();
+	}
+
+	/**
+	 * 
+	 * This method handles a message of the client, whose payload is in the
+	 * read buffer
+	 * 
+	 * @param type The type of the message
+	 * 
+	 */
+	private void handle(byte type) {
+		switch (type) {
+			case Protocol.INPUT:
+				input = readBuffer.get() & 0xFF;
+			break;
+
+			case Protocol.START:
+				startRequested = true;
+			break;
+
+			case Protocol.NAME:
+				readBuffer.get(nameBytes);
+
+				// We'll only keep letters and digits
+				for (int i = 0; i < nameBytes.length; ++i) {
+					if (!Character.isLetterOrDigit(nameBytes[i])) {
+						nameBytes[i] = ' ';
+					}
+				}
+
+				name = new String(nameBytes, ASCII);
+			break;
+
+			case Protocol.SCORES:
+				scoresRequested = true;
+			break;
+		}
+	}
+
+	/**
+	 * 
+	 * This method advances the session by one step and sends what happened to
+	 * the client, it is called by the shard of the session
+	 * 
+	 * @param deltaT The time elapsed since the last step, in milliseconds
+	 * 
+	 */
+	public void step(int deltaT) {
+		if (startRequested) {
+			startRequested = false;
+
+			engine.reset();
+			playing = true;
+			lastScore = -1;
+
+			if (writeBuffer.remaining() < 9) {
+				close();
+				return;
+			}
+
+			writeBuffer.put(Protocol.STARTED);
+			writeBuffer.putLong(engine.getSeed());
+		}
+
+		if (playing) {
+			engine.step(input, deltaT);
+		}
+
+		String pendingName = name;
+
+		if (pendingName != null) {
+			name = null;
+
+			// A score goes into the table only once
+			if (lastScore >= 0) {
+				Highscores.getInstance().addScore(lastScore, pendingName);
+				lastScore = -1;
+			}
+
+			scoresRequested = true;
+		}
+
+		if (scoresRequested) {
+			scoresRequested = false;
+			writeScores();
+		}
+
+		flush();
+	}
+
+	/**
+	 * 
+	 * This method is called by the engine whenever an event occurs, so that
+	 * the client hears about it
+	 * 
+	 */
+	public void onGameEvent(GameEngine engine, GameEvent event) {
+		if (writeBuffer.remaining() < 6) {
+			// The client doesn't keep up with its own game
+			close();
+			return;
+		}
+
+		writeBuffer.put(Protocol.EVENT);
+		writeBuffer.put((byte) event.ordinal());
+		writeBuffer.putInt(engine.getScore());
+
+		if (event == GameEvent.GAME_OVER) {
+			playing = false;
+			lastScore = engine.getScore();
+		}
+	}
+
+	/**
+	 * 
+	 * This method writes the high scores table for the client
+	 * 
+	 */
+	private void writeScores() {
+		List<HighscoreEntry> scores = Highscores.getInstance().getScores();
+
+		if (writeBuffer.remaining() < 2 + scores.size() * (Protocol.NAME_LENGTH + 4)) {
+			close();
+			return;
+		}
+
+		writeBuffer.put(Protocol.SCORE_TABLE);
+		writeBuffer.put((byte) scores.size());
+
+		for (HighscoreEntry entry : scores) {
+			String entryName = entry.getName();
+
+			for (int i = 0; i < Protocol.NAME_LENGTH; ++i) {
+				writeBuffer.put((byte) (i < entryName.length() ? entryName.charAt(i) : ' '));
+			}
+
+			writeBuffer.putInt(entry.getScore());
+		}
+	}
+
+	/**
+	 * 
+	 * This method sends as much of the pending bytes as the client takes
+	 * 
+	 */
+	private void flush() {
+		if (closed || writeBuffer.position() == 0) {
+			return;
+		}
+
+		writeBuffer.flip();
+
+		try {
+			channel.write(writeBuffer);
+		} catch (IOException e) {
+			close();
+		}
+
+		writeBuffer.compact();
+	}
+
+	/**
+	 * 
+	 * This method ends the session and closes the connection
+	 * 
+	 */
+	public void close() {
+		closed = true;
+
+		try {
+			channel.close();
+		} catch (IOException e) {
+			// There's nothing left to do with it anyway
+		}
+	}
+
+	/**
+	 * 
+	 * This method tells if the session is over
+	 * 
+	 * @return True if the session was closed. False otherwise
+	 * 
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 
+	 * Getter for the engine
+	 * 
+	 * @return The engine of the game played in this session
+	 * 
+	 */
+	public GameEngine getEngine() {
+		return engine;
+	}
+}
@@ -0,0 +1,384 @@
+package com.dkhalife.projects;
+
+import org.newdawn.slick.geom.Point;
+
+/**
+ * 
+ * This class holds everything the playing screen shows of a game at a given
+ * step: the pit, the pieces, the numbers of the hud and how a versus game
+ * goes. The simulation fills one while the screen draws another, so the screen
+ * never sees the engine halfway through a step.
+ * 
+ * The snapshots are allocated once and filled over and over, the matrices of
+ * the pieces being shared since they never change.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class GameSnapshot {
+	// The step this snapshot was taken after
+	private long tick = -1;
+
+	// The state of the engine and its pit
+	private GameEngine.State state = GameEngine.State.START_GAME;
+	private long[] lines;
+	private int width;
+	private int height;
+
+	// The pieces
+	private Point[] currentPiece = null;
+	private Point[] nextPiece = null;
+	private int pieceX;
+	private int pieceY;
+	private int shadowPieceY;
+	private boolean shadowEnabled;
+	private int pieceCount;
+
+	// The numbers of the hud
+	private int score;
+	private int scoreGained;
+	private int multiplier;
+	private int level;
+	private int milestone;
+
+	// And the other player, in a versus game
+	private boolean versus = false;
+	private boolean waiting = false;
+	private boolean opponentLost = false;
+	private boolean opponentLeft = false;
+	private long[] opponentLines;
+	private int opponentScore;
+
+	/**
+	 * 
+	 * To construct a snapshot we need the size of the pits it shows
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * 
+	 */
+	public GameSnapshot(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		lines = new long[height];
+		opponentLines = new long[height];
+	}
+
+	/**
+	 * 
+	 * This method takes a snapshot of an engine
+	 * 
+	 * @param engine The engine, of the size given to this snapshot
+	 * @param tick The step it just played
+	 * 
+	 */
+	public void copyFrom(GameEngine engine, long tick) {
+		Pit pit = engine.getPit();
+
+		for (int y = 0; y < height; ++y) {
+			lines[y] = pit.getLine(y);
+		}
+
+		Piece current = engine.getCurrentPiece();
+		Piece next = engine.getNextPiece();
+
+		this.tick = tick;
+		state = engine.getState();
+
+		currentPiece = current != null ? current.getMatrix() : null;
+		nextPiece = next != null ? next.getMatrix() : null;
+		pieceX = engine.getPieceX();
+		pieceY = engine.getPieceY();
+		shadowPieceY = engine.getShadowPieceY();
+		shadowEnabled = engine.isShadowEnabled();
+		pieceCount = engine.getPieceCount();
+
+		score = engine.getScore();
+		scoreGained = engine.getScoreGained();
+		multiplier = engine.getMultiplier();
+		level = engine.getLevel();
+		milestone = engine.getMilestone();
+
+		versus = false;
+	}
+
+	/**
+	 * 
+	 * This method takes a snapshot of how a versus game goes, after the engine
+	 * was copied
+	 * 
+	 * @param link The link to the other player
+	 * 
+	 */
+	public void copyFrom(VersusLink link) {
+		PitSync opponent = link.getOpponent();
+
+		for (int y = 0; y < height; ++y) {
+			opponentLines[y] = opponent.getLine(y);
+		}
+
+		versus = true;
+		waiting = !link.isReady() && !link.isClosed();
+		opponentLost = link.isOpponentLost();
+		opponentLeft = link.isClosed() && !opponentLost;
+		opponentScore = opponent.getScore();
+	}
+
+	/**
+	 * 
+	 * Getter for the step
+	 * 
+	 * @return The step this snapshot was taken after, -1 if it wasn't taken
+	 *         yet
+	 * 
+	 */
+	public long getTick() {
+		return tick;
+	}
+
+	/**
+	 * 
+	 * Getter for the state of the engine
+	 * 
+	 * @return The state
+	 * 
+	 */
+	public GameEngine.State getState() {
+		return state;
+	}
+
+	/**
+	 * 
+	 * Getter for a line of the pit
+	 * 
+	 * @param y The index of the line
+	 * @return The line's mask, bit X being set when column X is filled
+	 * 
+	 */
+	public long getLine(int y) {
+		return lines[y];
+	}
+
+	/**
+	 * 
+	 * Getter for the width
+	 * 
+	 * @return The width of the pits
+	 * 
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 
+	 * Getter for the height
+	 * 
+	 * @return The height of the pits
+	 * 
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * 
+	 * Getter for the current piece
+	 * 
+	 * @return The blocks of the current piece as it is rotated, null if there
+	 *         is none yet
+	 * 
+	 */
+	public Point[] getCurrentPiece() {
+		return currentPiece;
+	}
+
+	/**
+	 * 
+	 * Getter for the next piece
+	 * 
+	 * @return The blocks of the next piece, null if there is none yet
+	 * 
+	 */
+	public Point[] getNextPiece() {
+		return nextPiece;
+	}
+
+	/**
+	 * 
+	 * Getter for the X position of the current piece
+	 * 
+	 * @return The X position
+	 * 
+	 */
+	public int getPieceX() {
+		return pieceX;
+	}
+
+	/**
+	 * 
+	 * Getter for the Y position of the current piece
+	 * 
+	 * @return The Y position
+	 * 
+	 */
+	public int getPieceY() {
+		return pieceY;
+	}
+
+	/**
+	 * 
+	 * Getter for the Y position of the shadow
+	 * 
+	 * @return The Y position
+	 * 
+	 */
+	public int getShadowPieceY() {
+		return shadowPieceY;
+	}
+
+	/**
+	 * 
+	 * Getter for the shadow toggle
+	 * 
+	 * @return True if the player wants to see the shadow. False otherwise
+	 * 
+	 */
+	public boolean isShadowEnabled() {
+		return shadowEnabled;
+	}
+
+	/**
+	 * 
+	 * Getter for the number of pieces
+	 * 
+	 * @return How many pieces were dealt
+	 * 
+	 */
+	public int getPieceCount() {
+		return pieceCount;
+	}
+
+	/**
+	 * 
+	 * Getter for the score
+	 * 
+	 * @return The score
+	 * 
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * 
+	 * Getter for the score gained by the last lines cleared
+	 * 
+	 * @return The score gained
+	 * 
+	 */
+	public int getScoreGained() {
+		return scoreGained;
+	}
+
+	/**
+	 * 
+	 * Getter for the multiplier
+	 * 
+	 * @return The multiplier
+	 * 
+	 */
+	public int getMultiplier() {
+		return multiplier;
+	}
+
+	/**
+	 * 
+	 * Getter for the level
+	 * 
+	 * @return The (ordinal) level
+	 * 
+	 */
+	public int getLevel() {
+		return level;
+	}
+
+	/**
+	 * 
+	 * Getter for the milestone
+	 * 
+	 * @return The score to reach for the next level, -1 if there is none
+	 * 
+	 */
+	public int getMilestone() {
+		return milestone;
+	}
+
+	/**
+	 * 
+	 * This method tells if this is a versus game
+	 * 
+	 * @return True if there is another player. False otherwise
+	 * 
+	 */
+	public boolean isVersus() {
+		return versus;
+	}
+
+	/**
+	 * 
+	 * This method tells if we are waiting for the other player
+	 * 
+	 * @return True if the other player didn't start yet. False otherwise
+	 * 
+	 */
+	public boolean isWaiting() {
+		return waiting;
+	}
+
+	/**
+	 * 
+	 * This method tells if the other player's game is over
+	 * 
+	 * @return True if the other player lost. False otherwise
+	 * 
+	 */
+	public boolean isOpponentLost() {
+		return opponentLost;
+	}
+
+	/**
+	 * 
+	 * This method tells if the other player is gone before losing
+	 * 
+	 * @return True if the other player left. False otherwise
+	 * 
+	 */
+	public boolean isOpponentLeft() {
+		return opponentLeft;
+	}
+
+	/**
+	 * 
+	 * Getter for a line of the other player's pit
+	 * 
+	 * @param y The index of the line
+	 * @return The line's mask
+	 * 
+	 */
+	public long getOpponentLine(int y) {
+		return opponentLines[y];
+	}
+
+	/**
+	 * 
+	 * Getter for the other player's score
+	 * 
+	 * @return The score
+	 * 
+	 */
+	public int getOpponentScore() {
+		return opponentScore;
+	}
+}
@@ -0,0 +1,63 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This class represents one line of the high scores table
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class HighscoreEntry {
+	// Who did it, how well and when
+	private String name;
+	private int score;
+	private long time;
+
+	/**
+	 * 
+	 * To construct an entry we need all of its fields
+	 * 
+	 * @param name The name of the player
+	 * @param score The score
+	 * @param time When the score was made, in milliseconds since the epoch
+	 * 
+	 */
+	public HighscoreEntry(String name, int score, long time) {
+		this.name = name;
+		this.score = score;
+		this.time = time;
+	}
+
+	/**
+	 * 
+	 * Getter for the name
+	 * 
+	 * @return The name of the player
+	 * 
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * 
+	 * Getter for the score
+	 * 
+	 * @return The score
+	 * 
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * 
+	 * Getter for the time
+	 * 
+	 * @return When the score was made, in milliseconds since the epoch
+	 * 
+	 */
+	public long getTime() {
+		return time;
+	}
+}
@@ -1,114 +1,185 @@
-package com.dkhalife.projects;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
-import java.util.SortedMap;
-import java.util.TreeMap;
-
-import javax.swing.JOptionPane;
-
-/**
- * 
- * This class keeps track of all the High Scores
- * 
- * @author Dany Khalife
- * 
- */
-public class Highscores {
-	// Since this class is a singleton, we'll keep track of its unique instance
-	private static Highscores instance = null;
-
-	// We'll also store the scores
-	private static SortedMap<Integer, String> scores = null;
-
-	// And the size of the table
-	private int size;
-
-	/**
-	 * 
-	 * To construct this class, we simply need to know the size of the scores
-	 * table
-	 * 
-	 * @param size
-	 */
-	@SuppressWarnings("unchecked")
-	private Highscores(int size) {
-		this.size = size;
-
-		// We'll just initialise our scores
-		scores = new TreeMap<>(java.util.Collections.reverseOrder());
-
-		try {
-			scores = (TreeMap<Integer, String>) new ObjectInputStream(new FileInputStream(new File("scores.dat"))).readObject();
-		} catch (IOException | ClassNotFoundException e) {
-		}
-	}
-
-	/**
-	 * 
-	 * Again, since this class is a singleton we need to provide a global access
-	 * point to its unique instance
-	 * 
-	 * @return The unique instance of this class
-	 * 
-	 */
-	public static Highscores getInstance() {
-		if (instance == null)
-			instance = new Highscores(10);
-
-		return instance;
-	}
-
-	/**
-	 * 
-	 * Getter for the scores
-	 * 
-	 * @return The scores
-	 * 
-	 */
-	public SortedMap<Integer, String> getScores() {
-		return scores;
-	}
-
-	/**
-	 * 
-	 * Setter for a new score
-	 * 
-	 * @param score The score to add
-	 * 
-	 */
-	public void addScore(Integer score) {
-		String name = (String) JOptionPane.showInputDialog(null, "Congratulations! You got a high score! \nEnter your name:", "Tetris", JOptionPane.PLAIN_MESSAGE, null, null, "");
-		
-		while(name.length() < 3){
-			name += " ";
-		}
-		
-		name = name.substring(0, 3).toUpperCase();
-		
-		scores.put(score, name);
-
-		if (scores.size() > size) {
-			scores.remove(scores.lastKey());
-		}
-
-		saveScores();
-	}
-
-	/**
-	 * 
-	 * This method saves the scores to the file
-	 * 
-	 */
-	private void saveScores() {
-		try {
-			new ObjectOutputStream(new FileOutputStream(new File("scores.dat"))).writeObject(scores);
-		} catch (IOException e) {
-			System.out.println("HighScores file created.");
-		}
-	}
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 
+ * This class keeps track of all the High Scores
+ * 
+ * The table is shared by every game of the server, so adding a score is
+ * synchronized. Reading it isn't: each change publishes a new read-only copy
+ * of the table, which the menu can walk every frame without locking or
+ * copying anything.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class Highscores {
+	// Since this class is a singleton, we'll keep track of its unique instance
+	private static Highscores instance = null;
+
+	// The journal is compacted once it holds this many times more records than
+	// the table
+	private static final int COMPACTION_RATIO = 4;
+
+	// We'll also store the scores, best first and the oldest first among equal
+	// scores
+	private List<HighscoreEntry> scores = new ArrayList<>();
+
+	// The copy handed out to readers, replaced whenever the table changes
+	private volatile List<HighscoreEntry> snapshot = Collections.emptyList();
+
+	// And the size of the table
+	private int size;
+
+	// The scores are kept in a journal
+	private ScoreJournal journal = new ScoreJournal(new File("scores.journal"), new File("scores.dat"));
+
+	/**
+	 * 
+	 * To construct this class, we simply need to know the size of the scores
+	 * table
+	 * 
+	 * @param size
+	 */
+	private Highscores(int size) {
+		this.size = size;
+
+		// We'll replay the journal into the table
+		for (HighscoreEntry entry : journal.load()) {
+			insert(entry);
+		}
+
+		// And drop what isn't needed anymore
+		if (journal.isDamaged() || journal.getRecordCount() > COMPACTION_RATIO * size) {
+			journal.compact(scores);
+		}
+
+		publish();
+	}
+
+	/**
+	 * 
+	 * Again, since this class is a singleton we need to provide a global access
+	 * point to its unique instance
+	 * 
+	 * @return The unique instance of this class
+	 * 
+	 */
+	public static synchronized Highscores getInstance() {
+		if (instance == null)
+			instance = new Highscores(10);
+
+		return instance;
+	}
+
+	/**
+	 * 
+	 * Getter for the scores
+	 * 
+	 * @return The scores
+	 * 
+	 */
+	public List<HighscoreEntry> getScores() {
+		return snapshot;
+	}
+
+	/**
+	 * 
+	 * This method tells if a score would make it into the table
+	 * 
+	 * @param score The score
+	 * @return True if the score is a high score. False otherwise
+	 * 
+	 */
+	public boolean isHighscore(int score) {
+		List<HighscoreEntry> scores = snapshot;
+
+		return scores.size() < size || scores.get(scores.size() - 1).getScore() < score;
+	}
+
+	/**
+	 * 
+	 * This method saves the scores still being written, before the game exits.
+	 * The scores added afterwards aren't saved.
+	 * 
+	 */
+	public static synchronized void close() {
+		if (instance != null) {
+			synchronized (instance) {
+				instance.journal.close();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Setter for a new score. The table is updated right away while the
+	 * journal is written in the background.
+	 * 
+	 * @param score The score to add
+	 * @param name The name of the player, padded or cut to three letters
+	 * 
+	 */
+	public synchronized void addScore(int score, String name) {
+		while (name.length() < 3) {
+			name += " ";
+		}
+
+		name = name.substring(0, 3).toUpperCase();
+
+		// Only the scores that make it into the table are saved
+		HighscoreEntry entry = new HighscoreEntry(name, score, System.currentTimeMillis());
+
+		if (insert(entry)) {
+			journal.append(entry);
+
+			if (journal.getRecordCount() > COMPACTION_RATIO * size) {
+				journal.compact(scores);
+			}
+
+			publish();
+		}
+	}
+
+	/**
+	 * 
+	 * This method hands a copy of the table out to the readers
+	 * 
+	 */
+	private void publish() {
+		snapshot = Collections.unmodifiableList(new ArrayList<>(scores));
+	}
+
+	/**
+	 * 
+	 * This method puts a score in its place in the table
+	 * 
+	 * @param entry The score
+	 * @return True if the score made it into the table. False otherwise
+	 * 
+	 */
+	private boolean insert(HighscoreEntry entry) {
+		// An equal score goes after the ones that were there first
+		int index = scores.size();
+
+		while (index > 0 && scores.get(index - 1).getScore() < entry.getScore()) {
+			--index;
+		}
+
+		if (index >= size) {
+			return false;
+		}
+
+		scores.add(index, entry);
+
+		if (scores.size() > size) {
+			scores.remove(scores.size() - 1);
+		}
+
+		return true;
+	}
 }
\ No newline at end of file
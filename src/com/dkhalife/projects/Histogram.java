@@ -0,0 +1,217 @@
+package com.dkhalife.projects;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 
+ * This class counts durations into a fixed set of buckets, so that recording
+ * one never allocates nor locks and any thread can do it. The buckets are one
+ * microsecond wide below 16 microseconds, then each power of two is split into
+ * 16 buckets, which keeps every bucket within about 6% of the durations it
+ * counts.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class Histogram {
+	// How many buckets each power of two is split into, as a power of two
+	private static final int SUB_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+	// The longest duration counted, about 18 minutes, longer ones being
+	// counted as this long
+	private static final int MAX_EXPONENT = 30;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BITS + 1) * SUB_BUCKETS;
+
+	// The counts of each bucket
+	private AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	// And a summary of all the durations
+	private AtomicLong count = new AtomicLong();
+	private AtomicLong total = new AtomicLong();
+	private AtomicLong max = new AtomicLong();
+
+	/**
+	 * 
+	 * This method counts a duration
+	 * 
+	 * @param micros The duration, in microseconds
+	 * 
+	 */
+	public void record(long micros) {
+		if (micros < 0) {
+			micros = 0;
+		}
+
+		counts.incrementAndGet(bucketOf(micros));
+		count.incrementAndGet();
+		total.addAndGet(micros);
+
+		// Only a longer duration needs to replace the maximum
+		long longest = max.get();
+
+		while (micros > longest && !max.compareAndSet(longest, micros)) {
+			longest = max.get();
+		}
+	}
+
+	/**
+	 * 
+	 * This method finds the bucket counting a duration
+	 * 
+	 * @param micros The duration, in microseconds
+	 * @return The index of the bucket
+	 * 
+	 */
+	private static int bucketOf(long micros) {
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+
+		int exponent = 63 - Long.numberOfLeadingZeros(micros);
+
+		if (exponent > MAX_EXPONENT) {
+			return BUCKETS - 1;
+		}
+
+		int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+
+		return SUB_BUCKETS + (exponent - SUB_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * 
+	 * Getter for the shortest duration of a bucket
+	 * 
+	 * @param bucket The index of the bucket
+	 * @return The shortest duration it counts, in microseconds
+	 * 
+	 */
+	public static long getBucketFrom(int bucket) {
+		if (bucket < SUB_BUCKETS) {
+			return bucket;
+		}
+
+		int exponent = (bucket - SUB_BUCKETS) / SUB_BUCKETS + SUB_BITS;
+		int sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+
+		return (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * 
+	 * Getter for the longest duration of a bucket
+	 * 
+	 * @param bucket The index of the bucket
+	 * @return The longest duration it counts, in microseconds
+	 * 
+	 */
+	public static long getBucketTo(int bucket) {
+		return bucket + 1 < BUCKETS ? getBucketFrom(bucket + 1) - 1 : Long.MAX_VALUE;
+	}
+
+	/**
+	 * 
+	 * Getter for the number of buckets
+	 * 
+	 * @return How many buckets every histogram has
+	 * 
+	 */
+	public static int getBucketCount() {
+		return BUCKETS;
+	}
+
+	/**
+	 * 
+	 * Getter for the count of a bucket
+	 * 
+	 * @param bucket The index of the bucket
+	 * @return How many durations fell into it
+	 * 
+	 */
+	public long getCount(int bucket) {
+		return counts.get(bucket);
+	}
+
+	/**
+	 * 
+	 * Getter for the number of durations
+	 * 
+	 * @return How many durations were counted
+	 * 
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * 
+	 * Getter for the average duration
+	 * 
+	 * @return The mean of the durations, in microseconds, 0 if there are none
+	 * 
+	 */
+	public long getMean() {
+		long n = count.get();
+
+		return n == 0 ? 0 : total.get() / n;
+	}
+
+	/**
+	 * 
+	 * Getter for the longest duration
+	 * 
+	 * @return The longest duration counted, in microseconds
+	 * 
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * 
+	 * Getter for a percentile
+	 * 
+	 * @param percent The percentile, between 0 and 100
+	 * @return The longest duration of the bucket holding that percentile, in
+	 *         microseconds, but never more than the longest duration counted
+	 * 
+	 */
+	public long getPercentile(double percent) {
+		long n = count.get();
+
+		if (n == 0) {
+			return 0;
+		}
+
+		// The rank of the duration we are looking for, from 1 to n
+		long rank = Math.max(1, (long) Math.ceil(percent / 100 * n));
+		long seen = 0;
+
+		for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+			seen += counts.get(bucket);
+
+			if (seen >= rank) {
+				return Math.min(getBucketTo(bucket), max.get());
+			}
+		}
+
+		return max.get();
+	}
+
+	/**
+	 * 
+	 * This method forgets every duration counted so far
+	 * 
+	 */
+	public void reset() {
+		for (int bucket = 0; bucket < BUCKETS; ++bucket) {
+			counts.set(bucket, 0);
+		}
+
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+}
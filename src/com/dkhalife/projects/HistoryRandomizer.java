@@ -0,0 +1,93 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This randomizer remembers the last four pieces and rolls again, a few times
+ * at most, when it picks one of them. The first piece is never an S, a Z or an
+ * O since those would leave an overhang on an empty pit.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class HistoryRandomizer extends Randomizer {
+	// How many times we roll before accepting a piece from the history
+	private static final int ROLLS = 6;
+
+	// The last pieces picked, oldest first
+	private int[] history = new int[4];
+
+	// Did we pick the first piece yet?
+	private boolean first = true;
+
+	/**
+	 * 
+	 * To construct this randomizer we just fill its history
+	 * 
+	 */
+	public HistoryRandomizer() {
+		reset();
+	}
+
+	@Override
+	public int next() {
+		int piece;
+
+		if (first) {
+			do {
+				piece = nextInt(PieceFactory.PIECE_TYPES);
+			} while (piece == PieceFactory.S || piece == PieceFactory.Z || piece == PieceFactory.O);
+
+			first = false;
+		}
+		else {
+			piece = nextInt(PieceFactory.PIECE_TYPES);
+
+			for (int roll = 1; roll < ROLLS && isInHistory(piece); ++roll) {
+				piece = nextInt(PieceFactory.PIECE_TYPES);
+			}
+		}
+
+		// We'll push the piece in the history
+		System.arraycopy(history, 1, history, 0, history.length - 1);
+		history[history.length - 1] = piece;
+
+		return piece;
+	}
+
+	@Override
+	public void copyFrom(Randomizer other) {
+		super.copyFrom(other);
+
+		HistoryRandomizer historyRandomizer = (HistoryRandomizer) other;
+		System.arraycopy(historyRandomizer.history, 0, history, 0, history.length);
+		first = historyRandomizer.first;
+	}
+
+	@Override
+	protected void reset() {
+		// The history starts full of S and Z pieces
+		for (int i = 0; i < history.length; ++i) {
+			history[i] = i % 2 == 0 ? PieceFactory.Z : PieceFactory.S;
+		}
+
+		first = true;
+	}
+
+	/**
+	 * 
+	 * This method checks whether a piece was picked recently
+	 * 
+	 * @param piece The type of the piece
+	 * @return True if the piece is in the history. False otherwise
+	 * 
+	 */
+	private boolean isInHistory(int piece) {
+		for (int i = 0; i < history.length; ++i) {
+			if (history[i] == piece) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+}
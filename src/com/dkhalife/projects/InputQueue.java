@@ -0,0 +1,114 @@
+package com.dkhalife.projects;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * This class carries the keys pressed and released, as they happen, from the
+ * thread that hears about them to the one stepping the engine. Each event is
+ * stamped with the time it happened, so that every step only takes the events
+ * that happened before the time it stands for, and a key tapped between two
+ * steps is never lost.
+ * 
+ * Only one thread may offer events and only one may take them. The events go
+ * through a ring allocated once, the two threads only sharing its head and
+ * tail, so neither of them ever waits nor allocates.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class InputQueue {
+	// How many events can wait, a power of two
+	private static final int CAPACITY = 1024;
+	private static final int MASK = CAPACITY - 1;
+
+	// The events: when they happened, and the input bit pressed or, when
+	// negative, released
+	private long[] times = new long[CAPACITY];
+	private int[] events = new int[CAPACITY];
+
+	// The next event to take and the next one to offer
+	private AtomicInteger head = new AtomicInteger();
+	private AtomicInteger tail = new AtomicInteger();
+
+	// The keys held and pressed as of the events taken, only seen by the
+	// thread taking them
+	private int held = GameEngine.INPUT_NONE;
+	private int pressed = GameEngine.INPUT_NONE;
+
+	/**
+	 * 
+	 * This method queues a key being pressed or released
+	 * 
+	 * @param time When it happened, as given by System.nanoTime()
+	 * @param input The input bit of the key, one of the INPUT_ constants of
+	 *            the engine
+	 * @param down True if the key was pressed. False if it was released
+	 * @return True if the event was queued. False if the queue is full
+	 * 
+	 */
+	public boolean offer(long time, int input, boolean down) {
+		int t = tail.get();
+
+		if (t - head.get() == CAPACITY) {
+			return false;
+		}
+
+		times[t & MASK] = time;
+		events[t & MASK] = down ? input : -input;
+
+		// The event is only seen once it is written
+		tail.lazySet(t + 1);
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * This method takes the events that happened up to a given time
+	 * 
+	 * @param until The time the step stands for, as given by System.nanoTime()
+	 * @return The inputs for the step: the keys held, and the keys pressed
+	 *         since the last call shifted by GameEngine.PRESSED_SHIFT
+	 * 
+	 */
+	public int take(long until) {
+		int h = head.get();
+		int t = tail.get();
+
+		while (h != t && times[h & MASK] - until <= 0) {
+			int event = events[h & MASK];
+
+			if (event > 0) {
+				// A key repeated by the system doesn't count as pressed again
+				pressed |= event & ~held;
+				held |= event;
+			}
+			else {
+				held &= ~(-event);
+			}
+
+			++h;
+		}
+
+		head.lazySet(h);
+
+		int input = held | (pressed << GameEngine.PRESSED_SHIFT);
+		pressed = GameEngine.INPUT_NONE;
+
+		return input;
+	}
+
+	/**
+	 * 
+	 * This method forgets every event, and the keys held. It must be called
+	 * by the thread taking the events.
+	 * 
+	 */
+	public void clear() {
+		head.lazySet(tail.get());
+
+		held = GameEngine.INPUT_NONE;
+		pressed = GameEngine.INPUT_NONE;
+	}
+}
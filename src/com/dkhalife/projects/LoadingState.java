@@ -0,0 +1,105 @@
+package com.dkhalife.projects;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.state.BasicGameState;
+import org.newdawn.slick.state.StateBasedGame;
+
+/**
+ * 
+ * This class implements the loading screen, shown while the resources a state
+ * needs are decoded in the background
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class LoadingState extends BasicGameState {
+	// How long the uploads may take each frame, in nanoseconds
+	private final static long UPLOAD_BUDGET = 10000000L;
+
+	// The position and size of the progress bar
+	private final static int BAR_X = 200;
+	private final static int BAR_Y = 290;
+	private final static int BAR_WIDTH = 400;
+	private final static int BAR_HEIGHT = 20;
+
+	// The current screen state id
+	private int stateID = -1;
+
+	// And the state we go to once what it needs is loaded
+	private int nextStateID = -1;
+	private String[] resources = new String[0];
+
+	/**
+	 * 
+	 * To construct a loading state we need its ID
+	 * 
+	 * @param stateID The ID for this loading state
+	 * 
+	 */
+	public LoadingState(int stateID) {
+		this.stateID = stateID;
+	}
+
+	/**
+	 * 
+	 * Setter for where to go next
+	 * 
+	 * @param nextStateID The ID of the state to enter once loaded
+	 * @param resources The IDs of the resources it needs
+	 * 
+	 */
+	public void setNextState(int nextStateID, String[] resources) {
+		this.nextStateID = nextStateID;
+		this.resources = resources;
+	}
+
+	/**
+	 * 
+	 * Getter for the ID
+	 * 
+	 * @return The ID
+	 * 
+	 */
+	public int getID() {
+		return stateID;
+	}
+
+	/**
+	 * 
+	 * This method initialises the loading screen, it needs no resources
+	 * 
+	 */
+	public void init(GameContainer container, StateBasedGame game) throws SlickException {
+	}
+
+	/**
+	 * 
+	 * This method renders the progress of the loading
+	 * 
+	 */
+	public void render(GameContainer container, StateBasedGame game, Graphics g) throws SlickException {
+		g.setColor(Color.darkGray);
+		g.fillRect(BAR_X, BAR_Y, BAR_WIDTH, BAR_HEIGHT);
+
+		g.setColor(Color.orange);
+		g.fillRect(BAR_X, BAR_Y, BAR_WIDTH * ResourceManager.getProgress(resources), BAR_HEIGHT);
+		g.drawString("Loading...", BAR_X, BAR_Y - 25);
+	}
+
+	/**
+	 * 
+	 * This method makes the decoded resources available and moves on once
+	 * the ones the next state needs are
+	 * 
+	 */
+	public void update(GameContainer gc, StateBasedGame sb, int deltaT) throws SlickException {
+		ResourceManager.update(UPLOAD_BUDGET);
+
+		if (ResourceManager.isLoaded(resources)) {
+			sb.enterState(nextStateID);
+		}
+	}
+}
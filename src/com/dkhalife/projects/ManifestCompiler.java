@@ -0,0 +1,31 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 
+ * This class compiles the XML file listing the resources into the binary
+ * manifest the game reads when it starts. It should be run from the root of
+ * the project every time res/resources.xml changes, the game falling back to
+ * the XML file until it is.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class ManifestCompiler {
+	// Where the resources are listed, and where they are compiled to
+	public static final String XML = "res/resources.xml";
+	public static final String BIN = "res/resources.bin";
+
+	// This main method compiles the manifest, "<xml> <bin>" naming other files
+	public static void main(String[] args) throws IOException {
+		File xml = new File(args.length >= 1 ? args[0] : XML);
+		File bin = new File(args.length >= 2 ? args[1] : BIN);
+
+		ResourceManifest manifest = ResourceManifest.parse(xml);
+		manifest.write(bin);
+
+		System.out.println(manifest.getCount() + " resources compiled into " + bin + ", " + bin.length() + " bytes");
+	}
+}
@@ -0,0 +1,176 @@
+package com.dkhalife.projects;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.state.BasicGameState;
+import org.newdawn.slick.state.StateBasedGame;
+
+/**
+ * 
+ * This class implements the screen where the player types their name after a
+ * high score
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class NameEntryState extends BasicGameState implements ResourceUser {
+	// The names are this long
+	private final static int NAME_LENGTH = 3;
+
+	// Keys pressed this soon after the game ended were meant for the game
+	private final static int INPUT_DELAY = 300;
+
+	// And the cursor blinks at this pace
+	private final static int BLINK_PERIOD = 500;
+
+	// The images the screen can't be shown without
+	private final static String[] RESOURCES = { "MAIN_MENU" };
+
+	// The current screen state id
+	private int stateID = -1;
+
+	// The resources used
+	private Image imBackground = null;
+	private UnicodeFont font = null;
+
+	// The score being entered and the name typed so far
+	private int score = 0;
+	private StringBuilder name = new StringBuilder(NAME_LENGTH);
+
+	// How long we've been on this screen
+	private int elapsed = 0;
+
+	// Where we go once the name is entered
+	private StateBasedGame game = null;
+
+	/**
+	 * 
+	 * To construct a name entry state we only need to give it an ID
+	 * 
+	 * @param stateID The ID for this state
+	 * 
+	 */
+	public NameEntryState(int stateID) {
+		this.stateID = stateID;
+	}
+
+	/**
+	 * 
+	 * Getter for the ID
+	 * 
+	 * @return The ID
+	 * 
+	 */
+	public int getID() {
+		return stateID;
+	}
+
+	/**
+	 * 
+	 * Getter for the resources needed before the screen is entered
+	 * 
+	 */
+	public String[] getResources() {
+		return RESOURCES;
+	}
+
+	/**
+	 * 
+	 * Setter for the score the name is entered for
+	 * 
+	 * @param score The score
+	 * 
+	 */
+	public void setScore(int score) {
+		this.score = score;
+	}
+
+	/**
+	 * 
+	 * This method initialises the name entry screen
+	 * 
+	 */
+	public void init(GameContainer container, StateBasedGame game) throws SlickException {
+		this.game = game;
+
+		// The font is shared with the other states
+		font = FontService.getFont();
+	}
+
+	/**
+	 * 
+	 * This method clears the name each time the screen is entered
+	 * 
+	 */
+	@Override
+	public void enter(GameContainer container, StateBasedGame game) throws SlickException {
+		super.enter(container, game);
+
+		imBackground = ResourceManager.getImage("MAIN_MENU");
+
+		name.setLength(0);
+		elapsed = 0;
+	}
+
+	/**
+	 * 
+	 * This method renders the name entry screen
+	 * 
+	 */
+	public void render(GameContainer container, StateBasedGame game, Graphics g) throws SlickException {
+		imBackground.draw(0, 0);
+
+		font.drawString(30, 270, "Congratulations! You got a high score!", Color.orange);
+		font.drawString(30, 300, "Score:", Color.orange);
+		FontService.drawNumber(font, 110, 300, score, Color.orange);
+		font.drawString(30, 360, "Enter your name:", Color.orange);
+
+		// The cursor blinks after the name until it is complete
+		boolean cursor = name.length() < NAME_LENGTH && (elapsed / BLINK_PERIOD) % 2 == 0;
+		font.drawString(240, 360, cursor ? name + "_" : name.toString(), Color.orange);
+
+		font.drawString(30, 420, "Press enter when you are done", Color.orange);
+	}
+
+	/**
+	 * 
+	 * This method only keeps track of time, the typing is done in keyPressed
+	 * 
+	 */
+	public void update(GameContainer gc, StateBasedGame sb, int deltaT) throws SlickException {
+		elapsed += deltaT;
+	}
+
+	/**
+	 * 
+	 * This method handles the keys typed as they come
+	 * 
+	 */
+	@Override
+	public void keyPressed(int key, char c) {
+		if (elapsed < INPUT_DELAY) {
+			return;
+		}
+
+		if (key == Input.KEY_ENTER) {
+			// The score store writes it in the background
+			Highscores.getInstance().addScore(score, name.toString());
+
+			AudioQueue.post("BUTTON_UP");
+			game.enterState(Tetris.MAINMENU_STATE);
+		}
+		else if (key == Input.KEY_BACK) {
+			if (name.length() > 0) {
+				name.setLength(name.length() - 1);
+			}
+		}
+		else if (Character.isLetterOrDigit(c) && c < 128 && name.length() < NAME_LENGTH) {
+			name.append(Character.toUpperCase(c));
+		}
+	}
+}
@@ -1,82 +1,99 @@
-package com.dkhalife.projects;
-
-import java.util.Random;
-
-import org.newdawn.slick.geom.Point;
-
-/**
- * 
- * This class implements a factory that constructs Tetris pieces
- * 
- * @author Dany Khalife
- * 
- */
-public abstract class PieceFactory {
-	// The factory knows each piece it can construct, and its possible rotation
-	// states matrix
-	static Point[][] TMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(0, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(-1, 0) }, { new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(0, 1) },
-			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(1, 0) } };
-
-	static Point[][] SMatrix = { { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(-1, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, -1) }, { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(-1, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, -1) } };
-
-	static Point[][] ZMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(0, -1), new Point(1, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(-1, 0), new Point(-1, -1) },
-			{ new Point(0, 0), new Point(-1, 0), new Point(0, -1), new Point(1, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(-1, 0), new Point(-1, -1) } };
-
-	static Point[][] OMatrix = { { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) },
-			{ new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) }, { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) },
-			{ new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) } };
-
-	static Point[][] IMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(2, 0) },
-			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(0, 2) }, { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(2, 0) },
-			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(0, 2) } };
-
-	static Point[][] LMatrix = { { new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(-1, -1) },
-			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(-1, 1) }, { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(1, 1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(1, -1) } };
-
-	static Point[][] JMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(1, -1) },
-			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(-1, -1) },
-			{ new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(-1, 1) }, { new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(1, 1) } };
-
-	/**
-	 * 
-	 * This method generates a random piece
-	 * 
-	 * @return A randomly generated piece
-	 * 
-	 */
-	public static Piece generateRandomPiece() {
-		Random r = new Random();
-
-		// Pick a number from 0-7 and generate the correspoding piece
-		switch (r.nextInt(7)) {
-			case 0:
-				return new Piece(IMatrix);
-
-			case 1:
-				return new Piece(JMatrix);
-
-			case 2:
-				return new Piece(LMatrix);
-
-			case 3:
-				return new Piece(SMatrix);
-
-			case 4:
-				return new Piece(TMatrix);
-
-			case 5:
-				return new Piece(OMatrix);
-
-			case 6:
-				return new Piece(ZMatrix);
-		}
-
-		return null;
-	}
-}
+package com.dkhalife.projects;
+
+import org.newdawn.slick.geom.Point;
+
+/**
+ * 
+ * This class implements a factory that constructs Tetris pieces
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class PieceFactory {
+	// The types of pieces the factory can construct
+	public static final int I = 0;
+	public static final int J = 1;
+	public static final int L = 2;
+	public static final int S = 3;
+	public static final int T = 4;
+	public static final int O = 5;
+	public static final int Z = 6;
+	public static final int PIECE_TYPES = 7;
+
+	// The factory knows each piece it can construct, and its possible rotation
+	// states matrix
+	static Point[][] TMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(0, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(-1, 0) }, { new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(0, 1) },
+			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(1, 0) } };
+
+	static Point[][] SMatrix = { { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(-1, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, -1) }, { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(-1, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(1, 0), new Point(1, -1) } };
+
+	static Point[][] ZMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(0, -1), new Point(1, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(-1, 0), new Point(-1, -1) },
+			{ new Point(0, 0), new Point(-1, 0), new Point(0, -1), new Point(1, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(-1, 0), new Point(-1, -1) } };
+
+	static Point[][] OMatrix = { { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) },
+			{ new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) }, { new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) },
+			{ new Point(0, 0), new Point(1, 0), new Point(0, -1), new Point(1, -1) } };
+
+	static Point[][] IMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(2, 0) },
+			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(0, 2) }, { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(2, 0) },
+			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(0, 2) } };
+
+	static Point[][] LMatrix = { { new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(-1, -1) },
+			{ new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(-1, 1) }, { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(1, 1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(1, -1) } };
+
+	static Point[][] JMatrix = { { new Point(0, 0), new Point(-1, 0), new Point(1, 0), new Point(1, -1) },
+			{ new Point(0, 0), new Point(0, 1), new Point(0, -1), new Point(-1, -1) },
+			{ new Point(0, 0), new Point(1, 0), new Point(-1, 0), new Point(-1, 1) }, { new Point(0, 0), new Point(0, -1), new Point(0, 1), new Point(1, 1) } };
+
+	// The matrices of each type, in order
+	private static Point[][][] matrices = { IMatrix, JMatrix, LMatrix, SMatrix, TMatrix, OMatrix, ZMatrix };
+
+	// The randomizer used when nobody provides one
+	private static Randomizer randomizer = new UniformRandomizer();
+
+	static {
+		randomizer.setSeed(System.nanoTime());
+	}
+
+	/**
+	 * 
+	 * Getter for the matrix of a type of piece
+	 * 
+	 * @param type The type of the piece
+	 * @return Its rotations matrix
+	 * 
+	 */
+	public static Point[][] getMatrix(int type) {
+		return matrices[type];
+	}
+
+	/**
+	 * 
+	 * This method constructs a piece of a given type
+	 * 
+	 * @param type The type of the piece
+	 * @return The piece, in its first rotation
+	 * 
+	 */
+	public static Piece createPiece(int type) {
+		return new Piece(type, matrices[type]);
+	}
+
+	/**
+	 * 
+	 * This method generates a random piece. Games should rather draw their
+	 * pieces from a seeded PieceQueue, which doesn't allocate.
+	 * 
+	 * @return A randomly generated piece
+	 * 
+	 */
+	public static synchronized Piece generateRandomPiece() {
+		return createPiece(randomizer.next());
+	}
+}
@@ -0,0 +1,163 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This class deals the pieces of a game from a randomizer. Its pieces are
+ * allocated once and recycled: the piece handed out by next() stays valid
+ * until the following call, and the previews until they are dealt.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class PieceQueue {
+	// Where the pieces come from
+	private Randomizer randomizer;
+
+	// The ring of pieces: the current one followed by the previews
+	private Piece[] pieces;
+	private int head = 0;
+
+	// Did we deal the first piece yet?
+	private boolean dealing = false;
+
+	/**
+	 * 
+	 * To construct a queue we need a randomizer and how far ahead we can look
+	 * 
+	 * @param randomizer The randomizer that picks the pieces
+	 * @param previews How many upcoming pieces can be peeked at
+	 * 
+	 */
+	public PieceQueue(Randomizer randomizer, int previews) {
+		this.randomizer = randomizer;
+
+		pieces = new Piece[previews + 1];
+
+		for (int i = 0; i < pieces.length; ++i) {
+			pieces[i] = PieceFactory.createPiece(PieceFactory.I);
+		}
+	}
+
+	/**
+	 * 
+	 * This method restarts the queue from a seed
+	 * 
+	 * @param seed The seed
+	 * 
+	 */
+	public void reset(long seed) {
+		randomizer.setSeed(seed);
+
+		for (int i = 0; i < pieces.length; ++i) {
+			refill(pieces[i]);
+		}
+
+		head = 0;
+		dealing = false;
+	}
+
+	/**
+	 * 
+	 * This method deals the next piece
+	 * 
+	 * @return The next piece, in its first rotation
+	 * 
+	 */
+	public Piece next() {
+		if (dealing) {
+			// The piece dealt last time is done with, it becomes the last
+			// preview
+			refill(pieces[head == 0 ? pieces.length - 1 : head - 1]);
+		}
+
+		Piece piece = pieces[head];
+
+		if (++head == pieces.length) {
+			head = 0;
+		}
+
+		dealing = true;
+
+		return piece;
+	}
+
+	/**
+	 * 
+	 * Getter for the current piece
+	 * 
+	 * @return The piece dealt last, or null if none was dealt yet
+	 * 
+	 */
+	public Piece current() {
+		if (!dealing) {
+			return null;
+		}
+
+		return pieces[head == 0 ? pieces.length - 1 : head - 1];
+	}
+
+	/**
+	 * 
+	 * This method turns this queue into a copy of another one, so that both
+	 * deal the same pieces from now on
+	 * 
+	 * @param other The queue to copy, it must have the same size and kind of
+	 *            randomizer
+	 * 
+	 */
+	public void copyFrom(PieceQueue other) {
+		if (other.pieces.length != pieces.length) {
+			throw new IllegalArgumentException("Only a queue of the same size can be copied");
+		}
+
+		randomizer.copyFrom(other.randomizer);
+
+		for (int i = 0; i < pieces.length; ++i) {
+			pieces[i].copyFrom(other.pieces[i]);
+		}
+
+		head = other.head;
+		dealing = other.dealing;
+	}
+
+	/**
+	 * 
+	 * This method peeks at an upcoming piece
+	 * 
+	 * @param index 0 for the piece that comes next, 1 for the one after, ...
+	 * @return The upcoming piece
+	 * 
+	 */
+	public Piece peek(int index) {
+		int position = head + index;
+
+		if (position >= pieces.length) {
+			position -= pieces.length;
+		}
+
+		return pieces[position];
+	}
+
+	/**
+	 * 
+	 * Getter for the number of previews
+	 * 
+	 * @return How many upcoming pieces can be peeked at
+	 * 
+	 */
+	public int getPreviewCount() {
+		return pieces.length - 1;
+	}
+
+	/**
+	 * 
+	 * This method recycles a piece into a freshly picked one
+	 * 
+	 * @param piece The piece to recycle
+	 * 
+	 */
+	private void refill(Piece piece) {
+		int type = randomizer.next();
+		piece.set(type, PieceFactory.getMatrix(type));
+	}
+}
@@ -1,205 +1,614 @@
-package com.dkhalife.projects;
-
-import java.util.ArrayList;
-
-import org.newdawn.slick.geom.Point;
-
-/**
- * 
- * This class represents the pit or playing area in Tetris
- * 
- * @author Dany Khalife
- * 
- */
-public class Pit {
-	// We'll need to remember the pit's width and height
-	private int height;
-	private int width;
-
-	// And we'll also keep track of what is inside the pit
-	private ArrayList<int[]> pit = null;
-
-	/**
-	 * 
-	 * To construct a pit, one needs to know only its width and height
-	 * 
-	 * @param width The pit's width
-	 * @param height The pit's height or depth
-	 * 
-	 */
-	public Pit(int width, int height) {
-		this.width = width;
-		this.height = height;
-
-		pit = new ArrayList<>();
-
-		// We'll initialise the pit
-		clear();
-	}
-
-	/**
-	 * 
-	 * Getter for the height
-	 * 
-	 * @return The pit's height
-	 * 
-	 */
-	public int getHeight() {
-		return height;
-	}
-
-	/**
-	 * 
-	 * Getter for the width
-	 * 
-	 * @return The pit's width
-	 * 
-	 */
-	public int getWidth() {
-		return width;
-	}
-
-	/**
-	 * 
-	 * Getter for a block
-	 * 
-	 * @param x The X coordinate of the block
-	 * @param y The Y coordinate of the block
-	 * 
-	 * @return The corresponding block
-	 * 
-	 */
-	public int getBlockAt(int x, int y) {
-		return pit.get(y)[x];
-	}
-
-	/**
-	 * 
-	 * Setter for a block
-	 * 
-	 * @param x The X coordinate of the block
-	 * @param y The Y coordinate of the block
-	 * 
-	 */
-	private final void setBlockAt(int x, int y) {
-		pit.get(y)[x] = 1;
-	}
-
-	/**
-	 * 
-	 * This method clears the pit
-	 * 
-	 */
-	public void clear() {
-		pit.clear();
-
-		for (int y = 0; y < height; ++y) {
-			addEmptyLine();
-		}
-	}
-
-	/**
-	 * 
-	 * This method adds an empty line in the pit
-	 * 
-	 */
-	private void addEmptyLine() {
-		// By default java initialises the array's cells to 0
-		pit.add(new int[width]);
-	}
-
-	/**
-	 * 
-	 * This method removes a line from the pit
-	 * 
-	 * @param index The index of the line to remove
-	 * 
-	 */
-	public void destroy(int index) {
-		// We remove the line
-		pit.remove(index);
-
-		// And replace it with another
-		addEmptyLine();
-	}
-
-	/**
-	 * 
-	 * This method tests whether a piece fits at the given position
-	 * 
-	 * @param matrix The matrix for the current piece
-	 * @param x The X coordinate of the test point
-	 * @param y The Y coordinate of the test point
-	 * @return True if the piece fits at that position. False otherwise
-	 * 
-	 */
-	public boolean doesPieceFitAt(Point[] matrix, int x, int y) {
-		for (int block = 0; block < 4; ++block) {
-			Point blockPos = matrix[block];
-
-			if (x + blockPos.getX() < 0) {
-				return false;
-			}
-
-			if (x + blockPos.getX() >= width) {
-				return false;
-			}
-
-			if (y + blockPos.getY() < 0) {
-				return false;
-			}
-
-			if (y + blockPos.getY() >= height) {
-				return false;
-			}
-
-			if (getBlockAt(x + (int) blockPos.getX(), y + (int) blockPos.getY()) == 1) {
-				return false;
-			}
-		}
-
-		return true;
-	}
-
-	/**
-	 * 
-	 * This method inserts a piece at the given position
-	 * 
-	 * @param piece The piece to tests if it fits
-	 * @param x The X coordinate of the insertion point
-	 * @param y The Y coordinate of the insertion point
-	 * @return True if the insertion succeeded. False otherwise
-	 * 
-	 */
-	public boolean insertPieceAt(Piece piece, int x, int y) {
-		Point[] rotation = piece.getMatrix();
-
-		if (!doesPieceFitAt(rotation, x, y)) {
-			return false;
-		}
-
-		for (int block = 0; block < 4; ++block) {
-			setBlockAt((int) rotation[block].getX() + x, (int) rotation[block].getY() + y);
-		}
-
-		return true;
-	}
-
-	/**
-	 * 
-	 * This method checks if a given line is full
-	 * 
-	 * @param line The index of the line
-	 * @return True if the line is full. False otherwise
-	 * 
-	 */
-	public boolean isLineFull(int line) {
-		for (int i = 0; i < width; ++i) {
-			if (getBlockAt(i, line) == 0) {
-				return false;
-			}
-		}
-
-		return true;
-	}
-}
\ No newline at end of file
+package com.dkhalife.projects;
+
+import org.newdawn.slick.geom.Point;
+
+/**
+ * 
+ * This class represents the pit or playing area in Tetris
+ * 
+ * Each line of the pit is stored as a bitboard: a single long in which bit X
+ * is set when the block at column X is filled. This is why a pit cannot be
+ * wider than 64 columns.
+ * 
+ * The lines are preallocated once and reached through a ring of slot indices
+ * that maps each line index to the slot holding it. Destroying a line only
+ * remaps the indices on its shorter side and recycles its slot as the new top
+ * line, so clearing a line near the bottom costs next to nothing.
+ * 
+ * The pit also remembers the range of lines that changed since clearDirty()
+ * was last called, so that whoever draws it only redraws those lines, and the
+ * height of each column, which tells how far a piece can drop without
+ * stepping it down line by line.
+ * 
+ * Only the lines a piece lands on can become full, so inserting a piece also
+ * notes which of those lines it completed. Clearing lines after a piece locks
+ * then never has to look at the rest of the pit.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class Pit {
+	// The widest pit we can represent with one long per line
+	public static final int MAX_WIDTH = Long.SIZE;
+
+	// We'll need to remember the pit's width and height
+	private int height;
+	private int width;
+
+	// And we'll also keep track of what is inside the pit, one mask per slot
+	private long[] pit = null;
+
+	// This ring maps each line index to the slot where that line is stored,
+	// line 0 being found at the head of the ring
+	private int[] slots = null;
+	private int head = 0;
+
+	// This mask has one bit set for each column, it is what a full line looks
+	// like
+	private long fullLine;
+
+	// The height of each column: the index of its highest block plus one, or
+	// 0 if it is empty
+	private int[] heights = null;
+
+	// The lines completed by the last piece inserted, from the bottom up
+	private int[] completedLines = new int[4];
+	private int completedLineCount = 0;
+
+	// The lines that changed since the last call to clearDirty(), none if
+	// dirtyFrom is past dirtyTo
+	private int dirtyFrom;
+	private int dirtyTo;
+
+	/**
+	 * 
+	 * To construct a pit, one needs to know only its width and height
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height or depth
+	 * 
+	 */
+	public Pit(int width, int height) {
+		if (width <= 0 || width > MAX_WIDTH) {
+			throw new IllegalArgumentException("The pit's width must be between 1 and " + MAX_WIDTH);
+		}
+
+		if (height <= 0) {
+			throw new IllegalArgumentException("The pit's height must be positive");
+		}
+
+		this.width = width;
+		this.height = height;
+
+		pit = new long[height];
+		slots = new int[height];
+		heights = new int[width];
+		fullLine = width == MAX_WIDTH ? -1L : (1L << width) - 1;
+
+		// We'll initialise the pit
+		clearDirty();
+		clear();
+	}
+
+	/**
+	 * 
+	 * Getter for the height
+	 * 
+	 * @return The pit's height
+	 * 
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * 
+	 * Getter for the width
+	 * 
+	 * @return The pit's width
+	 * 
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 
+	 * Getter for a block
+	 * 
+	 * @param x The X coordinate of the block
+	 * @param y The Y coordinate of the block
+	 * 
+	 * @return The corresponding block
+	 * 
+	 */
+	public int getBlockAt(int x, int y) {
+		return (int) (pit[slotOf(y)] >>> x) & 1;
+	}
+
+	/**
+	 * 
+	 * Getter for a whole line
+	 * 
+	 * @param y The index of the line
+	 * @return The line's mask, bit X is set if the block at column X is filled
+	 * 
+	 */
+	public long getLine(int y) {
+		return pit[slotOf(y)];
+	}
+
+	/**
+	 * 
+	 * This method finds the slot where a line is stored
+	 * 
+	 * @param y The index of the line
+	 * @return The slot holding that line
+	 * 
+	 */
+	private final int slotOf(int y) {
+		int position = head + y;
+
+		if (position >= height) {
+			position -= height;
+		}
+
+		return slots[position];
+	}
+
+	/**
+	 * 
+	 * Setter for a block
+	 * 
+	 * @param x The X coordinate of the block
+	 * @param y The Y coordinate of the block
+	 * 
+	 */
+	private final void setBlockAt(int x, int y) {
+		pit[slotOf(y)] |= 1L << x;
+
+		if (y >= heights[x])
+			heights[x] = y + 1;
+
+		markDirty(y, y);
+	}
+
+	/**
+	 * 
+	 * This method adds lines to the range of lines that changed
+	 * 
+	 * @param from The index of the first line that changed
+	 * @param to The index of the last line that changed
+	 * 
+	 */
+	private final void markDirty(int from, int to) {
+		if (from < dirtyFrom)
+			dirtyFrom = from;
+
+		if (to > dirtyTo)
+			dirtyTo = to;
+	}
+
+	/**
+	 * 
+	 * This method tells if some lines changed since clearDirty() was called
+	 * 
+	 * @return True if some lines changed. False otherwise
+	 * 
+	 */
+	public boolean isDirty() {
+		return dirtyFrom <= dirtyTo;
+	}
+
+	/**
+	 * 
+	 * Getter for the first line that changed
+	 * 
+	 * @return The index of the lowest line that changed
+	 * 
+	 */
+	public int getDirtyFrom() {
+		return dirtyFrom;
+	}
+
+	/**
+	 * 
+	 * Getter for the last line that changed
+	 * 
+	 * @return The index of the highest line that changed
+	 * 
+	 */
+	public int getDirtyTo() {
+		return dirtyTo;
+	}
+
+	/**
+	 * 
+	 * This method forgets about the lines that changed, once they are redrawn
+	 * 
+	 */
+	public void clearDirty() {
+		dirtyFrom = height;
+		dirtyTo = -1;
+	}
+
+	/**
+	 * 
+	 * Getter for the height of a column
+	 * 
+	 * @param x The X coordinate of the column
+	 * @return The index of the highest block of the column plus one, or 0 if
+	 *         the column is empty
+	 * 
+	 */
+	public int getColumnHeight(int x) {
+		return heights[x];
+	}
+
+	/**
+	 * 
+	 * This method clears the pit
+	 * 
+	 */
+	public void clear() {
+		head = 0;
+
+		for (int y = 0; y < height; ++y) {
+			slots[y] = y;
+			pit[y] = 0;
+		}
+
+		for (int x = 0; x < width; ++x) {
+			heights[x] = 0;
+		}
+
+		completedLineCount = 0;
+
+		markDirty(0, height - 1);
+	}
+
+	/**
+	 * 
+	 * This method turns this pit into a copy of another one
+	 * 
+	 * @param other The pit to copy, it must have the same size
+	 * 
+	 */
+	public void copyFrom(Pit other) {
+		if (other.width != width || other.height != height) {
+			throw new IllegalArgumentException("Only a pit of the same size can be copied");
+		}
+
+		System.arraycopy(other.pit, 0, pit, 0, height);
+		System.arraycopy(other.slots, 0, slots, 0, height);
+		System.arraycopy(other.heights, 0, heights, 0, width);
+		System.arraycopy(other.completedLines, 0, completedLines, 0, other.completedLineCount);
+		completedLineCount = other.completedLineCount;
+		head = other.head;
+
+		markDirty(0, height - 1);
+	}
+
+	/**
+	 * 
+	 * This method removes a line from the pit
+	 * 
+	 * @param index The index of the line to remove
+	 * 
+	 */
+	public void destroy(int index) {
+		int position = head + index;
+
+		if (position >= height) {
+			position -= height;
+		}
+
+		int slot = slots[position];
+
+		if (index < height - 1 - index) {
+			// There are fewer lines below, so we move each of them one step up
+			// the ring and advance its head past the destroyed line
+			for (int p = position; p != head;) {
+				int below = p == 0 ? height - 1 : p - 1;
+				slots[p] = slots[below];
+				p = below;
+			}
+
+			// The old head position is now the top of the pit
+			slots[head] = slot;
+
+			if (++head == height) {
+				head = 0;
+			}
+		}
+		else {
+			// Otherwise we move every line above it one step down
+			int top = head == 0 ? height - 1 : head - 1;
+
+			for (int p = position; p != top;) {
+				int above = p == height - 1 ? 0 : p + 1;
+				slots[p] = slots[above];
+				p = above;
+			}
+
+			slots[top] = slot;
+		}
+
+		// The columns reaching above the destroyed line lose one block of
+		// height, unless their highest block was on that line
+		for (int x = 0; x < width; ++x) {
+			if (heights[x] > index + 1) {
+				--heights[x];
+			}
+			else if (heights[x] == index + 1) {
+				heights[x] = findColumnHeight(x, index - 1);
+			}
+		}
+
+		// And the destroyed line's slot is recycled as an empty line
+		pit[slot] = 0;
+
+		// Every line above the destroyed one moved down
+		markDirty(index, height - 1);
+	}
+
+	/**
+	 * 
+	 * This method pushes the pit up and fills its bottom with garbage lines,
+	 * full but for a hole in the same column. The blocks pushed past the top
+	 * are lost.
+	 * 
+	 * @param lines The number of garbage lines
+	 * @param hole The column left empty in every garbage line
+	 * 
+	 */
+	public void addGarbage(int lines, int hole) {
+		lines = Math.min(lines, height);
+		long garbage = fullLine & ~(1L << hole);
+
+		for (int i = 0; i < lines; ++i) {
+			// Moving the head back turns the top line into the bottom one
+			head = head == 0 ? height - 1 : head - 1;
+			pit[slots[head]] = garbage;
+		}
+
+		// Every column grows by the garbage, but the hole
+		for (int x = 0; x < width; ++x) {
+			if (heights[x] + lines > height) {
+				heights[x] = findColumnHeight(x, height - 1);
+			}
+			else if (heights[x] > 0 || x != hole) {
+				heights[x] += lines;
+			}
+		}
+
+		// And the lines completed but not destroyed yet moved up with the rest
+		int kept = 0;
+
+		for (int i = 0; i < completedLineCount; ++i) {
+			if (completedLines[i] + lines < height) {
+				completedLines[kept++] = completedLines[i] + lines;
+			}
+		}
+
+		completedLineCount = kept;
+
+		markDirty(0, height - 1);
+	}
+
+	/**
+	 * 
+	 * This method finds the height of a column by looking down from a line
+	 * 
+	 * @param x The X coordinate of the column
+	 * @param from The index of the line to start looking from
+	 * @return The index of the highest block at or below that line plus one,
+	 *         or 0 if there is none
+	 * 
+	 */
+	private int findColumnHeight(int x, int from) {
+		for (int y = from; y >= 0; --y) {
+			if ((pit[slotOf(y)] & (1L << x)) != 0) {
+				return y + 1;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * 
+	 * This method finds how far a piece can drop from the given position
+	 * 
+	 * @param matrix The matrix for the piece
+	 * @param x The X coordinate of the piece
+	 * @param y The Y coordinate of the piece
+	 * @return The number of lines the piece can move down, 0 if it can't move
+	 *         or doesn't fit at that position
+	 * 
+	 */
+	public int getDropDistance(Point[] matrix, int x, int y) {
+		int distance = Integer.MAX_VALUE;
+
+		for (int block = 0; block < 4; ++block) {
+			int blockX = x + (int) matrix[block].getX();
+			int blockY = y + (int) matrix[block].getY();
+
+			// A block under the top of its column, say beneath an overhang, or
+			// out of the pit can't be handled with the heights
+			if (blockX + Integer.MIN_VALUE >= width + Integer.MIN_VALUE || blockY >= height || blockY < heights[blockX]) {
+				return getDropDistanceSlowly(matrix, x, y);
+			}
+
+			// Every block above the top of its column can fall down to it
+			distance = Math.min(distance, blockY - heights[blockX]);
+		}
+
+		return distance;
+	}
+
+	/**
+	 * 
+	 * This method finds how far a piece can drop by moving it down one line at
+	 * a time
+	 * 
+	 * @param matrix The matrix for the piece
+	 * @param x The X coordinate of the piece
+	 * @param y The Y coordinate of the piece
+	 * @return The number of lines the piece can move down
+	 * 
+	 */
+	private int getDropDistanceSlowly(Point[] matrix, int x, int y) {
+		if (!doesPieceFitAt(matrix, x, y)) {
+			return 0;
+		}
+
+		int distance = 0;
+
+		while (doesPieceFitAt(matrix, x, y - distance - 1)) {
+			++distance;
+		}
+
+		return distance;
+	}
+
+	/**
+	 * 
+	 * This method tests whether a piece fits at the given position
+	 * 
+	 * @param matrix The matrix for the current piece
+	 * @param x The X coordinate of the test point
+	 * @param y The Y coordinate of the test point
+	 * @return True if the piece fits at that position. False otherwise
+	 * 
+	 */
+	public boolean doesPieceFitAt(Point[] matrix, int x, int y) {
+		for (int block = 0; block < 4; ++block) {
+			int blockX = x + (int) matrix[block].getX();
+			int blockY = y + (int) matrix[block].getY();
+
+			// A single unsigned comparison rejects both negative coordinates
+			// and coordinates past the edge of the pit
+			if (blockX + Integer.MIN_VALUE >= width + Integer.MIN_VALUE) {
+				return false;
+			}
+
+			if (blockY + Integer.MIN_VALUE >= height + Integer.MIN_VALUE) {
+				return false;
+			}
+
+			if ((pit[slotOf(blockY)] & (1L << blockX)) != 0) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * This method inserts a piece at the given position
+	 * 
+	 * @param piece The piece to tests if it fits
+	 * @param x The X coordinate of the insertion point
+	 * @param y The Y coordinate of the insertion point
+	 * @return True if the insertion succeeded. False otherwise
+	 * 
+	 */
+	public boolean insertPieceAt(Piece piece, int x, int y) {
+		return insertPieceAt(piece.getMatrix(), x, y);
+	}
+
+	/**
+	 * 
+	 * This method inserts a piece, as rotated, at the given position
+	 * 
+	 * @param rotation The matrix for the piece
+	 * @param x The X coordinate of the insertion point
+	 * @param y The Y coordinate of the insertion point
+	 * @return True if the insertion succeeded. False otherwise
+	 * 
+	 */
+	public boolean insertPieceAt(Point[] rotation, int x, int y) {
+		if (!doesPieceFitAt(rotation, x, y)) {
+			return false;
+		}
+
+		// We'll also find the lowest and highest lines the piece lands on
+		int bottom = height;
+		int top = -1;
+
+		for (int block = 0; block < 4; ++block) {
+			int blockY = (int) rotation[block].getY() + y;
+
+			setBlockAt((int) rotation[block].getX() + x, blockY);
+
+			bottom = Math.min(bottom, blockY);
+			top = Math.max(top, blockY);
+		}
+
+		// Since they are the only ones that could have become full
+		completedLineCount = 0;
+
+		for (int line = bottom; line <= top; ++line) {
+			if (isLineFull(line)) {
+				completedLines[completedLineCount++] = line;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * Getter for the number of lines completed by the last piece inserted
+	 * 
+	 * @return How many lines the piece filled, 0 once they are destroyed
+	 * 
+	 */
+	public int getCompletedLineCount() {
+		return completedLineCount;
+	}
+
+	/**
+	 * 
+	 * Getter for a line completed by the last piece inserted
+	 * 
+	 * @param i The index of the completed line, from the bottom up
+	 * @return The index of that line in the pit
+	 * 
+	 */
+	public int getCompletedLine(int i) {
+		return completedLines[i];
+	}
+
+	/**
+	 * 
+	 * This method destroys the lines completed by the last piece inserted
+	 * 
+	 * @return The number of lines destroyed
+	 * 
+	 */
+	public int destroyCompletedLines() {
+		int destroyed = completedLineCount;
+
+		// We'll go from the top down so that the lines left keep their index
+		while (completedLineCount > 0) {
+			destroy(completedLines[--completedLineCount]);
+		}
+
+		return destroyed;
+	}
+
+	/**
+	 * 
+	 * This method checks if a given line is full
+	 * 
+	 * @param line The index of the line
+	 * @return True if the line is full. False otherwise
+	 * 
+	 */
+	public boolean isLineFull(int line) {
+		return pit[slotOf(line)] == fullLine;
+	}
+}
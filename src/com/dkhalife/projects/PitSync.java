@@ -0,0 +1,257 @@
+package com.dkhalife.projects;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 
+ * This class keeps a copy of a pit in sync with a remote one. The sending
+ * side encodes snapshots of its pit, each one made of the lines that differ
+ * from the last snapshot the other side acknowledged, with a bit per block.
+ * The receiving side applies them on top of the snapshot they were based on.
+ * 
+ * Both sides keep the last few snapshots in a ring, so as long as fewer than
+ * WINDOW snapshots are waiting for an acknowledgement, the base of a new one
+ * is always known to both. Past that, a snapshot is based on the empty pit.
+ * 
+ * A snapshot is made of the int sequence number of the snapshot, the int
+ * sequence number of its base or -1 for the empty pit, the int score, a mask
+ * with a bit for each line that changed, then the blocks of those lines.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class PitSync {
+	// How many snapshots can wait for an acknowledgement
+	public static final int WINDOW = 32;
+
+	// The size of the pit, and of its lines once packed
+	private int width;
+	private int height;
+	private int lineBytes;
+	private int maskBytes;
+
+	// The snapshots sent, by sequence number modulo WINDOW
+	private long[][] sent;
+	private int[] sentScores = new int[WINDOW];
+	private int sentSeq = -1;
+	private int ackedSeq = -1;
+
+	// And the snapshots received
+	private long[][] received;
+	private int[] receivedScores = new int[WINDOW];
+	private int receivedSeq = -1;
+
+	// An empty pit, the base of the first snapshots
+	private long[] empty;
+
+	/**
+	 * 
+	 * To construct a sync we need the size of the pits on both sides
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * 
+	 */
+	public PitSync(int width, int height) {
+		this.width = width;
+		this.height = height;
+
+		lineBytes = (width + 7) / 8;
+		maskBytes = (height + 7) / 8;
+
+		sent = new long[WINDOW][height];
+		received = new long[WINDOW][height];
+		empty = new long[height];
+	}
+
+	/**
+	 * 
+	 * This method tells if the pit changed since the last snapshot sent
+	 * 
+	 * @param pit The pit
+	 * @param score The score that goes with it
+	 * @return True if a new snapshot is needed. False otherwise
+	 * 
+	 */
+	public boolean hasChanged(Pit pit, int score) {
+		if (sentSeq < 0) {
+			return true;
+		}
+
+		int last = sentSeq % WINDOW;
+
+		if (sentScores[last] != score) {
+			return true;
+		}
+
+		long[] lines = sent[last];
+
+		for (int y = 0; y < height; ++y) {
+			if (lines[y] != pit.getLine(y)) {
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	/**
+	 * 
+	 * Getter for the largest snapshot
+	 * 
+	 * @return The most bytes a snapshot can take
+	 * 
+	 */
+	public int getMaxSize() {
+		return 12 + maskBytes + height * lineBytes;
+	}
+
+	/**
+	 * 
+	 * This method writes a snapshot of the pit
+	 * 
+	 * @param pit The pit, of the size given to this sync
+	 * @param score The score that goes with it
+	 * @param out The buffer to write to, with room for getMaxSize() bytes
+	 * @return The sequence number of the snapshot
+	 * 
+	 */
+	public int encode(Pit pit, int score, ByteBuffer out) {
+		int seq = sentSeq + 1;
+		int base = seq - ackedSeq < WINDOW ? ackedSeq : -1;
+		long[] baseLines = base < 0 ? empty : sent[base % WINDOW];
+		long[] lines = sent[seq % WINDOW];
+
+		out.putInt(seq);
+		out.putInt(base);
+		out.putInt(score);
+
+		// First the mask of the lines that changed
+		int maskStart = out.position();
+
+		for (int i = 0; i < maskBytes; ++i) {
+			out.put((byte) 0);
+		}
+
+		for (int y = 0; y < height; ++y) {
+			lines[y] = pit.getLine(y);
+
+			if (lines[y] != baseLines[y]) {
+				out.put(maskStart + y / 8, (byte) (out.get(maskStart + y / 8) | (1 << (y % 8))));
+
+				// Then their blocks, the first columns first
+				for (int i = 0; i < lineBytes; ++i) {
+					out.put((byte) (lines[y] >>> (8 * i)));
+				}
+			}
+		}
+
+		sentScores[seq % WINDOW] = score;
+		sentSeq = seq;
+
+		return seq;
+	}
+
+	/**
+	 * 
+	 * This method takes note that the other side received a snapshot, so that
+	 * the next ones can be based on it
+	 * 
+	 * @param seq The sequence number of the snapshot
+	 * 
+	 */
+	public void acknowledge(int seq) {
+		if (seq > ackedSeq && seq <= sentSeq) {
+			ackedSeq = seq;
+		}
+	}
+
+	/**
+	 * 
+	 * This method reads a snapshot sent by the other side
+	 * 
+	 * @param in The buffer holding the snapshot
+	 * @return The sequence number of the snapshot, to acknowledge
+	 * 
+	 */
+	public int decode(ByteBuffer in) {
+		int seq = in.getInt();
+		int base = in.getInt();
+		int score = in.getInt();
+
+		if (seq <= receivedSeq || base >= seq || base > receivedSeq || (base >= 0 && seq - base >= WINDOW)) {
+			throw new IllegalArgumentException("Snapshot " + seq + " can't be based on " + base);
+		}
+
+		long[] baseLines = base < 0 ? empty : received[base % WINDOW];
+		long[] lines = received[seq % WINDOW];
+		int maskStart = in.position();
+
+		in.position(maskStart + maskBytes);
+
+		for (int y = 0; y < height; ++y) {
+			if ((in.get(maskStart + y / 8) & (1 << (y % 8))) == 0) {
+				lines[y] = baseLines[y];
+				continue;
+			}
+
+			long line = 0;
+
+			for (int i = 0; i < lineBytes; ++i) {
+				line |= (in.get() & 0xFFL) << (8 * i);
+			}
+
+			lines[y] = line;
+		}
+
+		receivedScores[seq % WINDOW] = score;
+		receivedSeq = seq;
+
+		return seq;
+	}
+
+	/**
+	 * 
+	 * Getter for a line of the remote pit
+	 * 
+	 * @param y The index of the line
+	 * @return The line's mask as of the last snapshot received
+	 * 
+	 */
+	public long getLine(int y) {
+		return receivedSeq < 0 ? 0 : received[receivedSeq % WINDOW][y];
+	}
+
+	/**
+	 * 
+	 * Getter for the remote score
+	 * 
+	 * @return The score as of the last snapshot received
+	 * 
+	 */
+	public int getScore() {
+		return receivedSeq < 0 ? 0 : receivedScores[receivedSeq % WINDOW];
+	}
+
+	/**
+	 * 
+	 * Getter for the width
+	 * 
+	 * @return The width of the pits
+	 * 
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 
+	 * Getter for the height
+	 * 
+	 * @return The height of the pits
+	 * 
+	 */
+	public int getHeight() {
+		return height;
+	}
+}
@@ -1,498 +1,682 @@
-package com.dkhalife.projects;
-
-import java.io.IOException;
-import java.util.Date;
-
-import org.newdawn.slick.Color;
-import org.newdawn.slick.GameContainer;
-import org.newdawn.slick.Graphics;
-import org.newdawn.slick.Image;
-import org.newdawn.slick.Input;
-import org.newdawn.slick.SlickException;
-import org.newdawn.slick.UnicodeFont;
-import org.newdawn.slick.font.effects.ColorEffect;
-import org.newdawn.slick.geom.Point;
-import org.newdawn.slick.loading.DeferredResource;
-import org.newdawn.slick.loading.LoadingList;
-import org.newdawn.slick.state.BasicGameState;
-import org.newdawn.slick.state.StateBasedGame;
-
-/**
- * 
- * This class represents the playing screen
- * 
- * @author Dany Khalife
- * 
- */
-public class PlayingState extends BasicGameState {
-	// First we define some constants that we will use throughout this class
-	private final static int PIT_X = 52;
-	private final static int PIT_Y = 18;
-	private final static int BLOCK_SIZE = 28;
-	private final static int INPUT_TIMETOUT = 100;
-
-	// We need to store the state for this screen
-	private int stateID;
-
-	// We'll keep track of the resources being used
-	private Image hud = null;
-	private UnicodeFont font = null;
-
-	// We'll keep track of the pit
-	private Pit pit = new Pit(10, 20);
-
-	// We need a score and a multiplier
-	private int score;
-	private int scoreGained = 0;
-	private int multiplier = 1;
-	private boolean comboStreak = false;
-
-	// And the current (ordinal) level and scores to reach to pass to the next
-	// level
-	private int level = 0;
-	private int[] milestones = { 2000, 5000, 10000, 30000, 50000, 100000, 150000, 350000, 600000, 1000000 };
-
-	// These two variables are used to limit the number of consecutive user
-	// interactions
-	private int inputDelta = 0;
-	private int dropTimer = 0;
-	private int[] dropTimeouts = { 1000, 900, 850, 800, 750, 700, 650, 600, 550, 500 };
-
-	// We'll also keep an eye on the current and next piece
-	private Piece nextPiece = null;
-	private Piece currentPiece = null;
-
-	// The coordinates for the current piece
-	private int pieceX;
-	private int pieceY;
-	private int shadowPieceY;
-
-	// Do we want shadow?
-	private boolean enableShadow = true;
-	
-	// We'll keep track of the game logic with a state machine
-	private STATE currentState = null;
-
-	private enum STATE {
-		START_GAME, NEW_PIECE, MOVING_PIECE, LINE_DESTRUCTION, PAUSE_GAME, GAME_OVER
-	}
-
-	/**
-	 * 
-	 * To construct a PlayingState all you need is a unique id
-	 * 
-	 * @param stateID The ID set for this state
-	 * 
-	 */
-	public PlayingState(int stateID) {
-		this.stateID = stateID;
-	}
-
-	/**
-	 * 
-	 * Getter for the current state ID
-	 * 
-	 */
-	public int getID() {
-		return stateID;
-	}
-
-	/**
-	 * 
-	 * This method gets called whenever the game enters the playing state
-	 * 
-	 */
-	public void enter(GameContainer gc, StateBasedGame sb) throws SlickException {
-		super.enter(gc, sb);
-
-		// And reset the state machine to the first state
-		currentState = STATE.START_GAME;
-	}
-
-	/**
-	 * 
-	 * This method initialises the game for this state
-	 * 
-	 */
-	public void init(GameContainer container, StateBasedGame game) throws SlickException {
-		hud = ResourceManager.getImage("HUD");
-	}
-
-	/**
-	 * 
-	 * This method updates the viewport so that it corresponds to the user's
-	 * input
-	 * 
-	 */
-	@SuppressWarnings("unchecked")
-	public void update(GameContainer gc, StateBasedGame sb, int deltaT) throws SlickException {
-		// First lets load the resources if any are needed
-		if (LoadingList.get().getRemainingResources() > 0) {
-			try {
-				DeferredResource e = LoadingList.get().getNext();
-
-				System.out.println(new Date() + " INFO:" + e.getDescription());
-
-				e.load();
-			} catch (IOException e) {
-				throw new SlickException("Error loading resource", e);
-			}
-		}
-		else {
-			if (font == null) {
-				font = new UnicodeFont("res/fonts/ITCKRIST.ttf", 20, true, false);
-				font.addAsciiGlyphs();
-				font.getEffects().add(new ColorEffect(java.awt.Color.white));
-				font.addAsciiGlyphs();
-				font.loadGlyphs();
-			}
-
-			// Then it's just a matter of doing the right action at the right
-			// state
-			switch (currentState) {
-				case START_GAME:
-					// Play the game start sound
-					ResourceManager.getSound("GAME_START").play();
-
-					// Here we'll just empty our pit
-					pit.clear();
-
-					// Reset the score and level
-					score = 0;
-					level = 0;
-					scoreGained = 0;
-					multiplier = level + 1;
-
-					// And reset the timer
-					dropTimer = dropTimeouts[level];
-
-					// And move to the next state
-					currentState = STATE.NEW_PIECE;
-				break;
-
-				case NEW_PIECE:
-					// Here we'll need to generate a new piece
-					generateNewPiece();
-
-					// And find the location of its shadow
-					calculateShadowPiece();
-				break;
-
-				case MOVING_PIECE:
-					// Here we'll just move the piece
-					movePiece(gc, sb, deltaT);
-
-					// And find the location of its shadow
-					calculateShadowPiece();
-				break;
-
-				case LINE_DESTRUCTION:
-					// Here we'll check if any lines are full
-					checkForFullLines();
-
-					// And move to the next state
-					currentState = STATE.NEW_PIECE;
-				break;
-
-				case PAUSE_GAME:
-					if (gc.getInput().isKeyDown(Input.KEY_ESCAPE)) {
-						currentState = STATE.MOVING_PIECE;
-					}
-				break;
-
-				case GAME_OVER:
-					// Play the game over sound
-					ResourceManager.getSound("GAME_OVER").play();
-
-					// Here we'll just save the high score
-					Highscores.getInstance().addScore(score);
-
-					// And go back to the main menu
-					sb.enterState(Tetris.MAINMENU_STATE);
-				break;
-			}
-		}
-	}
-
-	/**
-	 * 
-	 * This method draws a piece at a specific coordinate
-	 * 
-	 * @param p The piece to draw
-	 * @param x The X coordinate of the piece
-	 * @param y The Y coordinate of the piece
-	 * 
-	 */
-	public void drawPieceAt(Piece p, int x, int y, boolean shadow) {
-		if (p == null)
-			return;
-
-		Point[] rotation = p.getMatrix();
-
-		// Draw each of the blocks for the piece
-		for (int i = 0; i < 4; i++) {
-			ResourceManager.getImage(shadow ? "TRANSPARENT_BLOCK" : "BLOCK").draw(PIT_X + (rotation[i].getX() + x) * BLOCK_SIZE,
-					PIT_Y + (pit.getHeight() - 1 - (rotation[i].getY() + y)) * BLOCK_SIZE);
-		}
-	}
-
-	/**
-	 * 
-	 * This method draws the shadow of the current piece on the pit
-	 * 
-	 */
-	private void calculateShadowPiece() {
-		shadowPieceY = pieceY;
-
-		while (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, shadowPieceY)) {
-			--shadowPieceY;
-		}
-
-		++shadowPieceY;
-	}
-
-	/**
-	 * 
-	 * This method renders the game viewport
-	 * 
-	 */
-	public void render(GameContainer container, StateBasedGame game, Graphics g) throws SlickException {
-		// First we'll draw the hud, score and level
-		hud.draw(0, 0);
-
-		font.drawString(600, 25, String.valueOf(score), Color.orange);
-		font.drawString(430, 190, String.valueOf(level + 1), Color.orange);
-		font.drawString(530, 223, (level < milestones.length ? String.valueOf(milestones[level]) : "-"), Color.orange);
-		font.drawString(480, 255, String.valueOf(multiplier), Color.orange);
-		font.drawString(560, 290, String.valueOf(scoreGained), Color.orange);
-
-		// We'll draw the pieces on top of it
-		for (int line = 0; line < pit.getHeight(); line++) {
-			for (int col = 0; col < pit.getWidth(); col++) {
-				int block = pit.getBlockAt(col, line);
-
-				if (block == 0)
-					continue;
-
-				ResourceManager.getImage("BLOCK").draw(PIT_X + col * BLOCK_SIZE, PIT_Y + (BLOCK_SIZE * (pit.getHeight() - line - 1)));
-			}
-		}
-
-		// Draw the shadow only if we want it and it is far from the real piece
-		if (enableShadow && pieceY - shadowPieceY > 6) {
-			drawPieceAt(currentPiece, pieceX, shadowPieceY, true);
-		}
-
-		// Draw the current piece and the next one
-		drawPieceAt(currentPiece, pieceX, pieceY, false);
-		drawPieceAt(nextPiece, pit.getWidth() + 2, pit.getHeight() - 2, false);
-	}
-
-	/**
-	 * 
-	 * This method checks for valid piece movements and drops the piece at a
-	 * regular time interval
-	 * 
-	 * @param gc The game container
-	 * @param sb The state based game
-	 * @param deltaT The time difference between the last update
-	 * 
-	 */
-	private void movePiece(GameContainer gc, StateBasedGame sb, int deltaT) {
-		// Decrease both our timers
-		dropTimer -= deltaT;
-		inputDelta -= deltaT;
-
-		// Is it time to drop the piece?
-		if (dropTimer < 0) {
-			// Ok it is, but does the pit fit below?
-			if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY - 1)) {
-				--pieceY;
-				ResourceManager.getSound("PIECE_FALL").play();
-			}
-			else {
-				pit.insertPieceAt(currentPiece, pieceX, pieceY);
-				currentState = STATE.LINE_DESTRUCTION;
-			}
-
-			// Reset the drop timeout
-			dropTimer = dropTimeouts[level];
-		}
-
-		// Is it time to accept the user input?
-		if (inputDelta < 0) {
-			Input input = gc.getInput();
-
-			// Are we trying to pause the game ?
-			if (input.isKeyDown(Input.KEY_ESCAPE)) {
-				currentState = STATE.PAUSE_GAME;
-			}
-			
-			// Are we toggling shadow?
-			if (input.isKeyDown(Input.KEY_S)) {
-				enableShadow = !enableShadow;
-				inputDelta = INPUT_TIMETOUT;
-			}
-
-			// Did we press left
-			if (input.isKeyDown(Input.KEY_LEFT)) {
-				// We'll try to go left
-				if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX - 1, pieceY)) {
-					--pieceX;
-					inputDelta = INPUT_TIMETOUT;
-					ResourceManager.getSound("PIECE_MOVE").play();
-				}
-			}
-
-			// Did we press right
-			if (input.isKeyDown(Input.KEY_RIGHT)) {
-				// We'll try to go right
-				if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX + 1, pieceY)) {
-					++pieceX;
-					inputDelta = INPUT_TIMETOUT;
-
-					ResourceManager.getSound("PIECE_MOVE").play();
-				}
-			}
-
-			// Did we press down
-			if (input.isKeyDown(Input.KEY_DOWN)) {
-				// We'll ttry to go down
-				if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY - 1)) {
-					--pieceY;
-					inputDelta = INPUT_TIMETOUT / 2;
-				}
-				else {
-					// We tried to go down but we can't anymore so lets block
-					// this piece and move on
-
-					pit.insertPieceAt(currentPiece, pieceX, pieceY);
-					currentState = STATE.LINE_DESTRUCTION;
-					ResourceManager.getSound("PIECE_TOUCH").play();
-				}
-			}
-
-			// Did we press up
-			if (input.isKeyDown(Input.KEY_UP)) {
-				// We'll try to rotate
-				if (pit.doesPieceFitAt(currentPiece.getMatrix(currentPiece.getRotation() + 1), pieceX, pieceY)) {
-					inputDelta = 3 * INPUT_TIMETOUT / 2;
-					currentPiece.rotate();
-
-					ResourceManager.getSound("PIECE_ROTATE").play();
-				}
-			}
-
-			// Did we press space
-			if (input.isKeyDown(Input.KEY_SPACE)) {
-				// Drop the piece
-				inputDelta = INPUT_TIMETOUT;
-
-				pieceY = shadowPieceY;
-				pit.insertPieceAt(currentPiece, pieceX, pieceY);
-				currentState = STATE.LINE_DESTRUCTION;
-				ResourceManager.getSound("PIECE_TOUCH").play();
-			}
-		}
-	}
-
-	/**
-	 * 
-	 * This method generates a new piece
-	 * 
-	 */
-	private void generateNewPiece() {
-		// If we don't have a current piece, we'll need to set a next one
-		if (currentPiece == null)
-			nextPiece = PieceFactory.generateRandomPiece();
-
-		// Now we'll change the piece
-		currentPiece = nextPiece;
-
-		// We'll reset the position of the piece
-		pieceX = 5;
-		pieceY = 19;
-
-		// If the piece fits there
-		if (pit.doesPieceFitAt(currentPiece.getMatrix(), pieceX, pieceY)) {
-			// We'll generate a new piece as next piece
-			nextPiece = PieceFactory.generateRandomPiece();
-			currentState = STATE.MOVING_PIECE;
-		}
-		else {
-			// Otherwise it's game over
-			currentState = STATE.GAME_OVER;
-		}
-	}
-
-	/**
-	 * 
-	 * This method checks to see if there are any full lines and clears them
-	 * while adding points to the player's score
-	 * 
-	 */
-	private void checkForFullLines() {
-		// We'll keep track of how many lines were destroyed
-		int linesDestroyed = 0;
-
-		// We'll try to destroy lines from the bottom to the top
-		for (int line = 0; line < pit.getHeight();) {
-			if (pit.isLineFull(line)) {
-				pit.destroy(line);
-				++linesDestroyed;
-			}
-			else {
-				++line;
-			}
-		}
-
-		// Depending on how many lines were destroyed we give out a score bonus
-		// and a play a sound
-		switch (linesDestroyed) {
-			case 0:
-				score += 10;
-
-				// Reset multiplier to minimum
-				multiplier = level + 1;
-				comboStreak = false;
-			break;
-
-			case 1:
-				scoreGained = 100;
-				ResourceManager.getSound("SINGLE").play();
-			break;
-
-			case 2:
-				scoreGained = 300;
-				ResourceManager.getSound("DOUBLE").play();
-			break;
-
-			case 3:
-				scoreGained = 600;
-				ResourceManager.getSound("TRIPLE").play();
-			break;
-
-			case 4:
-				scoreGained = 1000;
-				ResourceManager.getSound("TETRIS").play();
-			break;
-		}
-
-		if (linesDestroyed > 0) {
-			// Increase multiplier on combo
-			if (comboStreak) {
-				multiplier += 1;
-			}
-
-			scoreGained *= multiplier;
-			score += scoreGained;
-
-			if (level < milestones.length && score > milestones[level]) {
-				ResourceManager.getSound("LEVEL_UP").play();
-				++level;
-			}
-
-			comboStreak = true;
-		}
-	}
-}
\ No newline at end of file
+package com.dkhalife.projects;
+
+import java.io.File;
+
+import org.newdawn.slick.Color;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.Graphics;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.Input;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.UnicodeFont;
+import org.newdawn.slick.geom.Point;
+import org.newdawn.slick.state.BasicGameState;
+import org.newdawn.slick.state.StateBasedGame;
+
+/**
+ * 
+ * This class represents the playing screen
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class PlayingState extends BasicGameState implements GameListener, ResourceUser {
+	// First we define some constants that we will use throughout this class
+	private final static int PIT_X = 52;
+	private final static int PIT_Y = 18;
+	private final static int BLOCK_SIZE = 28;
+
+	// The size of the pit, which a versus game needs on both sides
+	public final static int PIT_WIDTH = 10;
+	public final static int PIT_HEIGHT = 20;
+
+	// The other player's pit is shown smaller, next to the hud
+	private final static int OPPONENT_X = 660;
+	private final static int OPPONENT_Y = 320;
+	private final static int OPPONENT_BLOCK_SIZE = 12;
+
+	// The images the game can't be shown without, the sounds heard all the
+	// time and the game sounds, whose first play mustn't wait on a decode
+	private final static String[] RESOURCES = { "HUD", "BLOCK", "TRANSPARENT_BLOCK", "PIECE_MOVE", "PIECE_ROTATE", "PIECE_TOUCH", "GAME_START",
+			"LEVEL_UP", "GAME_OVER" };
+
+	// We need to store the state for this screen
+	private int stateID;
+
+	// We'll keep track of the resources being used
+	private Image hud = null;
+	private UnicodeFont font = null;
+
+	// The blocks are drawn in a single batch from the atlas holding them
+	private Image atlas = null;
+	private Image block = null;
+	private Image shadowBlock = null;
+
+	// The hud and the locked blocks are kept in an offscreen layer, in which
+	// only the lines of the pit that changed are redrawn. Without support for
+	// offscreen images, we'll draw everything each frame.
+	private Image layer = null;
+	private Graphics layerGraphics = null;
+	private boolean layerValid = false;
+
+	// The rules of the game are all handled by the engine, which the
+	// simulation steps at a fixed rate on its own thread, with the keys
+	// pressed and released as they happen. We only ever draw the snapshots it
+	// publishes.
+	private GameEngine game = new GameEngine(PIT_WIDTH, PIT_HEIGHT);
+	private InputQueue inputs = new InputQueue();
+	private SnapshotBuffer snapshots = new SnapshotBuffer(PIT_WIDTH, PIT_HEIGHT);
+	private Simulation simulation = new Simulation(game, inputs, snapshots);
+
+	// The snapshot drawn this frame, and the lines of the pit already in the
+	// offscreen layer
+	private GameSnapshot shown = snapshots.getFront();
+	private long[] layerLines = new long[PIT_HEIGHT];
+
+	// And every game is recorded
+	private ReplayRecorder recorder = new ReplayRecorder(new File("replays"));
+
+	// Unless we are watching a replay, in which case its player has its own
+	// engine, stepped here and shown through a snapshot of our own
+	private ReplayPlayer player = null;
+	private GameSnapshot replaySnapshot = new GameSnapshot(PIT_WIDTH, PIT_HEIGHT);
+
+	// In versus mode, the link to the other player, for a single game
+	private VersusLink versus = null;
+
+	// The bot B hands the game over to, made the first time it is needed,
+	// and whether it played this game, in which case the score isn't a high
+	// score
+	private AutoPlayer bot = null;
+	private int autoPlayBudget = AutoPlayer.DEFAULT_BUDGET;
+	private boolean autoPlay = false;
+	private boolean autoPlayed = false;
+
+	/**
+	 * 
+	 * To construct a PlayingState all you need is a unique id
+	 * 
+	 * @param stateID The ID set for this state
+	 * 
+	 */
+	public PlayingState(int stateID) {
+		this.stateID = stateID;
+	}
+
+	/**
+	 * 
+	 * Setter for the replay to watch the next time this state is entered
+	 * 
+	 * @param replay The replay, or null to play a game
+	 * 
+	 */
+	public void setReplay(Replay replay) {
+		if (replay == null) {
+			player = null;
+		}
+		else {
+			player = new ReplayPlayer(replay);
+
+			// We'll hear about everything that happens in the replay
+			player.setListener(this);
+		}
+	}
+
+	/**
+	 * 
+	 * Setter for the other player of the next game
+	 * 
+	 * @param versus The link to the other player, or null to play alone
+	 * 
+	 */
+	public void setVersus(VersusLink versus) {
+		this.versus = versus;
+	}
+
+	/**
+	 * 
+	 * Setter for how the piece moves while left or right is held
+	 * 
+	 * @param autoShiftDelay How long a direction is held before it repeats,
+	 *            in milliseconds
+	 * @param autoRepeatRate How long between two repeated moves, in
+	 *            milliseconds
+	 * 
+	 */
+	public void setAutoShift(int autoShiftDelay, int autoRepeatRate) {
+		game.setAutoShift(autoShiftDelay, autoRepeatRate);
+	}
+
+	/**
+	 * 
+	 * Setter for how long the bot may think about a move, before it is first
+	 * made
+	 * 
+	 * @param budget The budget of each move, in milliseconds
+	 * 
+	 */
+	public void setAutoPlayBudget(int budget) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("The budget must be positive");
+		}
+
+		autoPlayBudget = budget;
+	}
+
+	/**
+	 * 
+	 * Getter for the current state ID
+	 * 
+	 */
+	public int getID() {
+		return stateID;
+	}
+
+	/**
+	 * 
+	 * Getter for the resources needed before the game is entered
+	 * 
+	 */
+	public String[] getResources() {
+		return RESOURCES;
+	}
+
+	/**
+	 * 
+	 * This method gets called whenever the game enters the playing state
+	 * 
+	 */
+	public void enter(GameContainer gc, StateBasedGame sb) throws SlickException {
+		super.enter(gc, sb);
+
+		// The images are only there once the loading screen is done
+		hud = ResourceManager.getImage("HUD");
+		atlas = ResourceManager.getAtlas();
+		block = ResourceManager.getImage("BLOCK");
+		shadowBlock = ResourceManager.getImage("TRANSPARENT_BLOCK");
+
+		// The game shown may have changed, the layer is redrawn from scratch
+		layerValid = false;
+
+		// A replay starts from its beginning
+		if (player != null) {
+			player.restart();
+			replaySnapshot.copyFrom(player.getEngine(), 0);
+			shown = replaySnapshot;
+			return;
+		}
+
+		// And reset the state machine to the first state
+		game.reset();
+		inputs.clear();
+
+		// We'll record this new game, unless garbage from the other player
+		// makes it impossible to replay from its inputs
+		if (versus == null) {
+			recorder.begin(game);
+		}
+
+		// The bot keeps playing from one game to the next, but never against
+		// someone
+		autoPlay &= versus == null;
+		autoPlayed = autoPlay;
+		simulation.setAutoPlayer(autoPlay ? bot : null);
+
+		// Then let the simulation play it
+		simulation.start(versus == null ? recorder : null, versus);
+		shown = snapshots.getFront();
+	}
+
+	/**
+	 * 
+	 * This method gets called whenever the game leaves the playing state
+	 * 
+	 */
+	@Override
+	public void leave(GameContainer gc, StateBasedGame sb) throws SlickException {
+		super.leave(gc, sb);
+
+		simulation.stop();
+	}
+
+	/**
+	 * 
+	 * This method initialises the game for this state
+	 * 
+	 */
+	public void init(GameContainer container, StateBasedGame game) throws SlickException {
+		// The font is shared with the other states
+		font = FontService.getFont();
+
+		try {
+			layer = new Image(container.getWidth(), container.getHeight());
+			layerGraphics = layer.getGraphics();
+		} catch (SlickException e) {
+			System.out.println("WARNING: No offscreen rendering, the pit will be redrawn every frame: " + e.getMessage());
+			layer = null;
+		}
+	}
+
+	/**
+	 * 
+	 * This method updates the viewport so that it corresponds to the user's
+	 * input
+	 * 
+	 */
+	public void update(GameContainer gc, StateBasedGame sb, int deltaT) throws SlickException {
+		long start = FrameProfiler.start();
+		FrameProfiler.record(FrameProfiler.Phase.DELTA, deltaT * 1000000L);
+
+		// F3 shows how long each part of a frame takes
+		if (gc.getInput().isKeyPressed(Input.KEY_F3))
+			FrameProfiler.toggleOverlay();
+
+		if (player != null) {
+			updateReplay(gc, sb, deltaT);
+		}
+		else {
+			updateGame(gc, sb, deltaT);
+		}
+
+		FrameProfiler.end(FrameProfiler.Phase.UPDATE, start);
+	}
+
+	/**
+	 * 
+	 * This method shows the game the simulation plays
+	 * 
+	 */
+	private void updateGame(GameContainer gc, StateBasedGame sb, int deltaT) {
+		// We'll draw the newest snapshot until the next update
+		shown = snapshots.getFront();
+
+		if (shown.getState() == GameEngine.State.GAME_OVER) {
+			// The simulation finished the recording or the versus game
+			simulation.stop();
+			versus = null;
+
+			// Here we'll let the player enter their name for a high score
+			if (!autoPlayed && Highscores.getInstance().isHighscore(shown.getScore())) {
+				((NameEntryState) sb.getState(Tetris.NAME_ENTRY_STATE)).setScore(shown.getScore());
+				sb.enterState(Tetris.NAME_ENTRY_STATE);
+			}
+			else {
+				// Or go back to the main menu
+				sb.enterState(Tetris.MAINMENU_STATE);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays the replay being watched and handles its controls
+	 * 
+	 */
+	private void updateReplay(GameContainer gc, StateBasedGame sb, int deltaT) {
+		Input input = gc.getInput();
+
+		if (input.isKeyPressed(Input.KEY_1))
+			player.setSpeed(1);
+
+		if (input.isKeyPressed(Input.KEY_2))
+			player.setSpeed(10);
+
+		if (input.isKeyPressed(Input.KEY_3))
+			player.setSpeed(ReplayPlayer.UNLIMITED);
+
+		if (input.isKeyPressed(Input.KEY_P))
+			player.togglePause();
+
+		if (input.isKeyPressed(Input.KEY_HOME))
+			player.restart();
+
+		// Seeking works piece by piece
+		if (input.isKeyPressed(Input.KEY_PRIOR))
+			player.seekToPiece(player.getEngine().getPieceCount() - 1);
+
+		if (input.isKeyPressed(Input.KEY_NEXT))
+			player.seekToPiece(player.getEngine().getPieceCount() + 1);
+
+		// Leaving a replay takes us back to playing games
+		if (input.isKeyPressed(Input.KEY_ESCAPE)) {
+			setReplay(null);
+			sb.enterState(Tetris.MAINMENU_STATE);
+			return;
+		}
+
+		// Once it is over, we'll stay on its last moment
+		player.update(deltaT);
+		replaySnapshot.copyFrom(player.getEngine(), player.getTick());
+	}
+
+	/**
+	 * 
+	 * This method queues the game keys as they are pressed, with the time they
+	 * were pressed at
+	 * 
+	 */
+	@Override
+	public void keyPressed(int key, char c) {
+		// B hands the game over to the bot and back
+		if (key == Input.KEY_B && player == null && versus == null) {
+			if (bot == null) {
+				bot = new AutoPlayer(autoPlayBudget);
+			}
+
+			autoPlay = !autoPlay;
+			autoPlayed |= autoPlay;
+			simulation.setAutoPlayer(autoPlay ? bot : null);
+			return;
+		}
+
+		int input = toInput(key);
+
+		if (input != GameEngine.INPUT_NONE && player == null) {
+			inputs.offer(System.nanoTime(), input, true);
+		}
+	}
+
+	/**
+	 * 
+	 * This method queues the game keys as they are released
+	 * 
+	 */
+	@Override
+	public void keyReleased(int key, char c) {
+		int input = toInput(key);
+
+		if (input != GameEngine.INPUT_NONE && player == null) {
+			inputs.offer(System.nanoTime(), input, false);
+		}
+	}
+
+	/**
+	 * 
+	 * This method translates a key into the engine's input
+	 * 
+	 * @param key The key's code
+	 * @return One of the engine's INPUT_ constants, INPUT_NONE if the key
+	 *         isn't used in the game
+	 * 
+	 */
+	private static int toInput(int key) {
+		switch (key) {
+			case Input.KEY_ESCAPE:
+				return GameEngine.INPUT_PAUSE;
+
+			case Input.KEY_S:
+				return GameEngine.INPUT_TOGGLE_SHADOW;
+
+			case Input.KEY_LEFT:
+				return GameEngine.INPUT_LEFT;
+
+			case Input.KEY_RIGHT:
+				return GameEngine.INPUT_RIGHT;
+
+			case Input.KEY_DOWN:
+				return GameEngine.INPUT_DOWN;
+
+			case Input.KEY_UP:
+				return GameEngine.INPUT_ROTATE;
+
+			case Input.KEY_SPACE:
+				return GameEngine.INPUT_DROP;
+
+			default:
+				return GameEngine.INPUT_NONE;
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays the sound that goes with each event of the replay
+	 * 
+	 */
+	public void onGameEvent(GameEngine engine, GameEvent event) {
+		AudioQueue.post(event);
+	}
+
+	/**
+	 * 
+	 * This method draws a piece at a specific coordinate. It must be called
+	 * while the atlas is in use.
+	 * 
+	 * @param piece The blocks of the piece to draw, or null
+	 * @param x The X coordinate of the piece
+	 * @param y The Y coordinate of the piece
+	 * 
+	 */
+	public void drawPieceAt(Point[] piece, int x, int y, boolean shadow) {
+		if (piece == null)
+			return;
+
+		// Draw each of the blocks for the piece
+		for (int i = 0; i < 4; i++) {
+			drawBlock(shadow ? shadowBlock : block, piece[i].getX() + x, piece[i].getY() + y);
+		}
+	}
+
+	/**
+	 * 
+	 * This method adds a block to the batch being drawn from the atlas
+	 * 
+	 * @param image The image of the block, from the atlas
+	 * @param col The column of the block
+	 * @param line The line of the block
+	 * 
+	 */
+	private void drawBlock(Image image, float col, float line) {
+		image.drawEmbedded(PIT_X + col * BLOCK_SIZE, PIT_Y + (PIT_HEIGHT - 1 - line) * BLOCK_SIZE, image.getWidth(), image.getHeight());
+	}
+
+	/**
+	 * 
+	 * This method adds the blocks of the other player's pit to the batch being
+	 * drawn from the atlas
+	 * 
+	 * @param snapshot The snapshot holding the other player's pit
+	 * 
+	 */
+	private void drawOpponent(GameSnapshot snapshot) {
+		for (int line = 0; line < snapshot.getHeight(); line++) {
+			long blocks = snapshot.getOpponentLine(line);
+			float top = OPPONENT_Y + (snapshot.getHeight() - 1 - line) * OPPONENT_BLOCK_SIZE;
+
+			while (blocks != 0) {
+				float left = OPPONENT_X + Long.numberOfTrailingZeros(blocks) * OPPONENT_BLOCK_SIZE;
+				block.drawEmbedded(left, top, OPPONENT_BLOCK_SIZE, OPPONENT_BLOCK_SIZE);
+				blocks &= blocks - 1;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method tells how the versus game goes, under the other player's pit
+	 * 
+	 * @param snapshot The snapshot of the versus game
+	 * 
+	 */
+	private void renderVersusStatus(GameSnapshot snapshot) {
+		int bottom = OPPONENT_Y + snapshot.getHeight() * OPPONENT_BLOCK_SIZE;
+
+		if (snapshot.isWaiting()) {
+			font.drawString(430, 550, "Waiting for the other player...", Color.orange);
+		}
+		else if (snapshot.isOpponentLost()) {
+			font.drawString(OPPONENT_X, bottom + 5, "They lost!", Color.orange);
+		}
+		else if (snapshot.isOpponentLeft()) {
+			font.drawString(OPPONENT_X, bottom + 5, "They left", Color.orange);
+		}
+		else {
+			FontService.drawNumber(font, OPPONENT_X, bottom + 5, snapshot.getOpponentScore(), Color.orange);
+		}
+	}
+
+	/**
+	 * 
+	 * This method brings the offscreen layer up to date with the pit, only
+	 * redrawing the lines that changed since it was last drawn
+	 * 
+	 * @param snapshot The snapshot shown
+	 * 
+	 */
+	private void updateLayer(GameSnapshot snapshot) {
+		if (!layerValid) {
+			layerGraphics.drawImage(hud, 0, 0);
+
+			redrawLines(snapshot, 0, snapshot.getHeight() - 1);
+			layerValid = true;
+			return;
+		}
+
+		// The simulation may have played many steps since the last frame, so
+		// we'll compare the lines with the ones in the layer
+		int from = snapshot.getHeight();
+		int to = -1;
+
+		for (int line = 0; line < snapshot.getHeight(); line++) {
+			if (snapshot.getLine(line) != layerLines[line]) {
+				from = Math.min(from, line);
+				to = line;
+			}
+		}
+
+		if (from <= to) {
+			redrawLines(snapshot, from, to);
+		}
+	}
+
+	/**
+	 * 
+	 * This method redraws some lines of the pit into the offscreen layer
+	 * 
+	 * @param snapshot The snapshot shown
+	 * @param from The index of the first line to redraw
+	 * @param to The index of the last line to redraw
+	 * 
+	 */
+	private void redrawLines(GameSnapshot snapshot, int from, int to) {
+		int right = PIT_X + snapshot.getWidth() * BLOCK_SIZE;
+
+		for (int line = from; line <= to; line++) {
+			int top = PIT_Y + (snapshot.getHeight() - 1 - line) * BLOCK_SIZE;
+
+			// We'll put the hud back where the line was, then its blocks
+			layerGraphics.drawImage(hud, PIT_X, top, right, top + BLOCK_SIZE, PIT_X, top, right, top + BLOCK_SIZE);
+
+			long blocks = snapshot.getLine(line);
+			layerLines[line] = blocks;
+
+			while (blocks != 0) {
+				layerGraphics.drawImage(block, PIT_X + Long.numberOfTrailingZeros(blocks) * BLOCK_SIZE, top);
+				blocks &= blocks - 1;
+			}
+		}
+
+		layerGraphics.flush();
+	}
+
+	/**
+	 * 
+	 * This method renders the game viewport
+	 * 
+	 */
+	public void render(GameContainer container, StateBasedGame game, Graphics g) throws SlickException {
+		long start = FrameProfiler.start();
+
+		GameSnapshot snapshot = shown;
+
+		// First we'll draw the hud with the locked blocks
+		if (layer != null) {
+			updateLayer(snapshot);
+			layer.draw(0, 0);
+		}
+		else {
+			hud.draw(0, 0);
+		}
+
+		// We'll draw the pieces on top of it, all in one batch since their
+		// blocks share the atlas
+		atlas.startUse();
+
+		if (layer == null) {
+			for (int line = 0; line < snapshot.getHeight(); line++) {
+				long blocks = snapshot.getLine(line);
+
+				// We'll only visit the filled blocks of each line
+				while (blocks != 0) {
+					drawBlock(block, Long.numberOfTrailingZeros(blocks), line);
+					blocks &= blocks - 1;
+				}
+			}
+		}
+
+		Point[] currentPiece = snapshot.getCurrentPiece();
+		int pieceX = snapshot.getPieceX();
+		int pieceY = snapshot.getPieceY();
+		int shadowPieceY = snapshot.getShadowPieceY();
+
+		// Draw the shadow only if we want it and it is far from the real piece
+		if (snapshot.isShadowEnabled() && pieceY - shadowPieceY > 6) {
+			drawPieceAt(currentPiece, pieceX, shadowPieceY, true);
+		}
+
+		// Draw the current piece and the next one
+		drawPieceAt(currentPiece, pieceX, pieceY, false);
+		drawPieceAt(snapshot.getNextPiece(), snapshot.getWidth() + 2, snapshot.getHeight() - 2, false);
+
+		if (snapshot.isVersus()) {
+			drawOpponent(snapshot);
+		}
+
+		atlas.endUse();
+
+		long hudStart = FrameProfiler.start();
+		FrameProfiler.record(FrameProfiler.Phase.RENDER_PIT, hudStart - start);
+
+		// Then the score and level, the numbers being drawn digit by digit so
+		// that no string is created
+		int milestone = snapshot.getMilestone();
+
+		FontService.drawNumber(font, 600, 25, snapshot.getScore(), Color.orange);
+		FontService.drawNumber(font, 430, 190, snapshot.getLevel() + 1, Color.orange);
+
+		if (milestone >= 0)
+			FontService.drawNumber(font, 530, 223, milestone, Color.orange);
+		else
+			font.drawString(530, 223, "-", Color.orange);
+
+		FontService.drawNumber(font, 480, 255, snapshot.getMultiplier(), Color.orange);
+		FontService.drawNumber(font, 560, 290, snapshot.getScoreGained(), Color.orange);
+
+		if (snapshot.isVersus()) {
+			g.setColor(Color.orange);
+			g.drawRect(OPPONENT_X - 1, OPPONENT_Y - 1, snapshot.getWidth() * OPPONENT_BLOCK_SIZE + 1, snapshot.getHeight() * OPPONENT_BLOCK_SIZE + 1);
+
+			renderVersusStatus(snapshot);
+		}
+
+		// And tell where we are when watching a replay
+		if (player != null) {
+			String speed = player.getSpeed() == ReplayPlayer.UNLIMITED ? "max" : player.getSpeed() + "x";
+			String status = "Replay " + speed + " - piece " + snapshot.getPieceCount() + "/" + player.getReplay().getPieceCount();
+
+			if (player.isFinished()) {
+				status += player.isFaithful() ? " - over" : " - out of sync";
+			}
+
+			font.drawString(430, 550, status, Color.orange);
+		}
+		else if (autoPlay) {
+			font.drawString(430, 550, "Autoplay - B to take over", Color.orange);
+		}
+
+		FrameProfiler.end(FrameProfiler.Phase.RENDER_HUD, hudStart);
+
+		// The timings go on top of everything
+		FrameProfiler.renderOverlay(g, font, 10, 10);
+		FrameProfiler.end(FrameProfiler.Phase.RENDER, start);
+	}
+}
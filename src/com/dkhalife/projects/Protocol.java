@@ -0,0 +1,90 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This class holds the constants of the protocol spoken between the game
+ * server and its clients. Every message is a type byte followed by a payload
+ * whose size only depends on the type, all numbers being big-endian.
+ * 
+ * The client sends:
+ * 
+ * INPUT (byte keys): the keys held from now on, as the engine's input bits
+ * START: starts a new game, the server answers with STARTED
+ * NAME (3 bytes): the name going with the score of the game that just ended
+ * SCORES: asks for the high scores table
+ * 
+ * The server sends:
+ * 
+ * STARTED (long seed): a game started, its pieces come from that seed
+ * EVENT (byte event, int score): something happened in the game
+ * SCORE_TABLE (byte count, then count times 3 bytes and an int): the scores
+ * 
+ * In versus mode, both players send each other messages framed by their
+ * type byte and a short giving the size of their payload:
+ * 
+ * HELLO (byte width, byte height): the size of the sender's pit
+ * SNAPSHOT: the lines of the sender's pit that changed, see PitSync
+ * ACK (int seq): the last snapshot received
+ * GARBAGE (byte lines): garbage lines for the receiver's pit
+ * LOST: the sender's game is over
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class Protocol {
+	// The port the server listens on unless told otherwise
+	public static final int DEFAULT_PORT = 7777;
+
+	// The messages sent by the client
+	public static final byte INPUT = 1;
+	public static final byte START = 2;
+	public static final byte NAME = 3;
+	public static final byte SCORES = 4;
+
+	// The messages sent by the server
+	public static final byte STARTED = 1;
+	public static final byte EVENT = 2;
+	public static final byte SCORE_TABLE = 3;
+
+	// The port a versus game is hosted on unless told otherwise
+	public static final int DEFAULT_VERSUS_PORT = 7778;
+
+	// The messages of versus mode
+	public static final byte HELLO = 16;
+	public static final byte SNAPSHOT = 17;
+	public static final byte ACK = 18;
+	public static final byte GARBAGE = 19;
+	public static final byte LOST = 20;
+
+	// The size of the type and length in front of a versus message
+	public static final int VERSUS_HEADER_SIZE = 3;
+
+	// The length of a name, in ASCII characters
+	public static final int NAME_LENGTH = 3;
+
+	/**
+	 * 
+	 * Getter for the size of the payload of a message sent by the client
+	 * 
+	 * @param type The type of the message
+	 * @return The number of bytes following the type, or -1 if the type is
+	 *         unknown
+	 * 
+	 */
+	public static int getPayloadSize(byte type) {
+		switch (type) {
+			case INPUT:
+				return 1;
+
+			case START:
+			case SCORES:
+				return 0;
+
+			case NAME:
+				return NAME_LENGTH;
+
+			default:
+				return -1;
+		}
+	}
+}
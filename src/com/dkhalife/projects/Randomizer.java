@@ -0,0 +1,74 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * A randomizer decides which piece comes next. Every randomizer draws from its
+ * own seeded generator (SplitMix64) so that the same seed always gives the
+ * same sequence of pieces, on any JVM, and without allocating anything.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class Randomizer {
+	// The state of the generator
+	private long state;
+
+	/**
+	 * 
+	 * This method restarts the sequence of pieces from a seed
+	 * 
+	 * @param seed The seed
+	 * 
+	 */
+	public void setSeed(long seed) {
+		state = seed;
+		reset();
+	}
+
+	/**
+	 * 
+	 * This method turns this randomizer into a copy of another one, so that
+	 * both pick the same pieces from now on
+	 * 
+	 * @param other The randomizer to copy, it must be of the same class
+	 * 
+	 */
+	public void copyFrom(Randomizer other) {
+		state = other.state;
+	}
+
+	/**
+	 * 
+	 * This method picks the next piece
+	 * 
+	 * @return The type of the next piece, see PieceFactory
+	 * 
+	 */
+	public abstract int next();
+
+	/**
+	 * 
+	 * This method forgets everything picked so far. It gets called whenever
+	 * the seed changes.
+	 * 
+	 */
+	protected abstract void reset();
+
+	/**
+	 * 
+	 * This method draws a number from the generator
+	 * 
+	 * @param bound The upper bound (exclusive)
+	 * @return A number between 0 and bound - 1
+	 * 
+	 */
+	protected final int nextInt(int bound) {
+		long z = (state += 0x9E3779B97F4A7C15L);
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		z ^= z >>> 31;
+
+		// We'll scale the upper 32 bits down to the bound
+		return (int) (((z >>> 32) * bound) >>> 32);
+	}
+}
@@ -0,0 +1,32 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * The kinds of randomizers available to pick the pieces
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public enum RandomizerType {
+	UNIFORM, BAG, HISTORY;
+
+	/**
+	 * 
+	 * This method creates a randomizer of this type
+	 * 
+	 * @return A new randomizer
+	 * 
+	 */
+	public Randomizer create() {
+		switch (this) {
+			case BAG:
+				return new BagRandomizer();
+
+			case HISTORY:
+				return new HistoryRandomizer();
+
+			default:
+				return new UniformRandomizer();
+		}
+	}
+}
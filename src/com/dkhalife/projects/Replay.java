@@ -0,0 +1,265 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * 
+ * A replay is a recorded game loaded back from its file, see ReplayFormat
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class Replay {
+	// What the game was played with
+	private RandomizerType randomizerType;
+	private int width;
+	private int height;
+	private int tickLength;
+	private int autoShiftDelay;
+	private int autoRepeatRate;
+	private long seed;
+
+	// The events: the tick at which the inputs changed and the new inputs
+	private int[] eventTicks;
+	private int[] eventInputs;
+	private int eventCount;
+
+	// And how the game ended
+	private int tickCount;
+	private int score;
+	private int pieceCount;
+
+	/**
+	 * 
+	 * Replays can only be loaded from a file
+	 * 
+	 */
+	private Replay() {
+	}
+
+	/**
+	 * 
+	 * This method loads a replay from a file
+	 * 
+	 * @param file The replay file
+	 * @return The replay
+	 * @throws IOException If the file can't be read or isn't a complete replay
+	 * 
+	 */
+	public static Replay load(File file) throws IOException {
+		ByteBuffer data;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			data = ByteBuffer.allocate((int) channel.size());
+
+			while (data.hasRemaining()) {
+				if (channel.read(data) < 0) {
+					throw new IOException("Replay " + file + " is truncated");
+				}
+			}
+		}
+
+		data.flip();
+
+		try {
+			return parse(data);
+		} catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException e) {
+			throw new IOException("Replay " + file + " is corrupted or incomplete", e);
+		}
+	}
+
+	/**
+	 * 
+	 * This method decodes a replay
+	 * 
+	 * @param data The content of the replay file
+	 * @return The replay
+	 * @throws IOException If the data isn't a replay this version can read
+	 * 
+	 */
+	private static Replay parse(ByteBuffer data) throws IOException {
+		byte[] magic = new byte[ReplayFormat.MAGIC.length];
+		data.get(magic);
+
+		if (!Arrays.equals(magic, ReplayFormat.MAGIC)) {
+			throw new IOException("Not a replay file");
+		}
+
+		int version = data.get();
+
+		if (version != ReplayFormat.VERSION) {
+			throw new IOException("Unsupported replay version " + version);
+		}
+
+		Replay replay = new Replay();
+
+		replay.randomizerType = RandomizerType.values()[data.get()];
+		replay.width = ReplayFormat.getVarint(data);
+		replay.height = ReplayFormat.getVarint(data);
+		replay.tickLength = ReplayFormat.getVarint(data);
+		replay.autoShiftDelay = ReplayFormat.getVarint(data);
+		replay.autoRepeatRate = ReplayFormat.getVarint(data);
+		replay.seed = data.getLong();
+
+		// We'll refuse what no engine could play rather than fail once the
+		// replay is watched
+		if (replay.width <= 0 || replay.width > Pit.MAX_WIDTH || replay.height <= 0) {
+			throw new IOException("Unsupported pit size " + replay.width + "x" + replay.height);
+		}
+
+		if (replay.tickLength <= 0 || replay.autoShiftDelay < 0 || replay.autoRepeatRate < 0) {
+			throw new IOException("Invalid timings");
+		}
+
+		// Every event takes at least two bytes, this is enough room for all of
+		// them
+		replay.eventTicks = new int[data.remaining() / 2 + 1];
+		replay.eventInputs = new int[replay.eventTicks.length];
+
+		int tick = 0;
+
+		for (int delta = ReplayFormat.getVarint(data); delta != ReplayFormat.END_OF_EVENTS; delta = ReplayFormat.getVarint(data)) {
+			tick += delta - 1;
+
+			replay.eventTicks[replay.eventCount] = tick;
+			replay.eventInputs[replay.eventCount] = ReplayFormat.getVarint(data);
+			++replay.eventCount;
+		}
+
+		replay.tickCount = ReplayFormat.getVarint(data);
+		replay.score = ReplayFormat.getVarint(data);
+		replay.pieceCount = ReplayFormat.getVarint(data);
+
+		return replay;
+	}
+
+	/**
+	 * 
+	 * This method creates an engine set up like the one that played the game
+	 * 
+	 * @return A new engine, reset to the start of the game
+	 * 
+	 */
+	public GameEngine createEngine() {
+		GameEngine engine = new GameEngine(width, height, randomizerType);
+		engine.setAutoShift(autoShiftDelay, autoRepeatRate);
+		engine.reset(seed);
+
+		return engine;
+	}
+
+	/**
+	 * 
+	 * This method finds the event in effect at a given tick
+	 * 
+	 * @param tick The tick
+	 * @param hint An event at or before that tick, to start searching from
+	 * @return The index of the last event at or before that tick, or -1 if the
+	 *         inputs didn't change yet
+	 * 
+	 */
+	public int findEvent(int tick, int hint) {
+		int event = Math.max(hint, -1);
+
+		while (event + 1 < eventCount && eventTicks[event + 1] <= tick) {
+			++event;
+		}
+
+		return event;
+	}
+
+	/**
+	 * 
+	 * Getter for the inputs of an event
+	 * 
+	 * @param event The index of the event, or -1
+	 * @return The inputs held from that event on
+	 * 
+	 */
+	public int getEventInput(int event) {
+		return event < 0 ? GameEngine.INPUT_NONE : eventInputs[event];
+	}
+
+	/**
+	 * 
+	 * Getter for the seed
+	 * 
+	 * @return The seed the game was played with
+	 * 
+	 */
+	public long getSeed() {
+		return seed;
+	}
+
+	/**
+	 * 
+	 * Getter for the width of the pit
+	 * 
+	 * @return The width of the pit the game was played in
+	 * 
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 
+	 * Getter for the height of the pit
+	 * 
+	 * @return The height of the pit the game was played in
+	 * 
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * 
+	 * Getter for the tick length
+	 * 
+	 * @return The length of a step, in milliseconds
+	 * 
+	 */
+	public int getTickLength() {
+		return tickLength;
+	}
+
+	/**
+	 * 
+	 * Getter for the number of ticks
+	 * 
+	 * @return How many steps the game lasted
+	 * 
+	 */
+	public int getTickCount() {
+		return tickCount;
+	}
+
+	/**
+	 * 
+	 * Getter for the score
+	 * 
+	 * @return The final score of the game
+	 * 
+	 */
+	public int getScore() {
+		return score;
+	}
+
+	/**
+	 * 
+	 * Getter for the number of pieces
+	 * 
+	 * @return How many pieces were dealt during the game
+	 * 
+	 */
+	public int getPieceCount() {
+		return pieceCount;
+	}
+}
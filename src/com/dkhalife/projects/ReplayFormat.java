@@ -0,0 +1,84 @@
+package com.dkhalife.projects;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 
+ * This class describes the binary format of the replay files.
+ * 
+ * A replay starts with a header: the MAGIC bytes, the VERSION, the randomizer
+ * type, the pit's width and height, the length of a tick, the auto shift delay
+ * and repeat rate, and the seed. Then comes one event each time the inputs
+ * change: the number of ticks since the previous event plus one, followed by
+ * the new inputs, keys pressed included, both as varints. A zero byte ends
+ * the events, and a trailer gives the number of ticks,
+ * the final score and the number of pieces, all as varints.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public final class ReplayFormat {
+	// The bytes every replay file starts with
+	public static final byte[] MAGIC = { 'T', 'R', 'P', 'L' };
+
+	// The version of the format
+	public static final int VERSION = 2;
+
+	// The extension of replay files
+	public static final String EXTENSION = ".trp";
+
+	// The byte that ends the events
+	public static final int END_OF_EVENTS = 0;
+
+	// A varint never takes more than this many bytes
+	public static final int MAX_VARINT_SIZE = 5;
+
+	/**
+	 * 
+	 * This class only holds constants and helpers
+	 * 
+	 */
+	private ReplayFormat() {
+	}
+
+	/**
+	 * 
+	 * This method writes a positive number using 7 bits per byte, the high bit
+	 * telling whether more bytes follow
+	 * 
+	 * @param buffer The buffer to write to
+	 * @param value The number to write
+	 * 
+	 */
+	public static void putVarint(ByteBuffer buffer, int value) {
+		while ((value & ~0x7F) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+
+		buffer.put((byte) value);
+	}
+
+	/**
+	 * 
+	 * This method reads a number written by putVarint
+	 * 
+	 * @param buffer The buffer to read from
+	 * @return The number
+	 * 
+	 */
+	public static int getVarint(ByteBuffer buffer) {
+		int value = 0;
+
+		for (int shift = 0; shift < 7 * MAX_VARINT_SIZE; shift += 7) {
+			int b = buffer.get();
+			value |= (b & 0x7F) << shift;
+
+			if ((b & 0x80) == 0) {
+				return value;
+			}
+		}
+
+		throw new IllegalArgumentException("Malformed varint");
+	}
+}
@@ -0,0 +1,298 @@
+package com.dkhalife.projects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 
+ * This class plays a replay back by feeding its recorded inputs to an engine,
+ * at normal speed, faster, or as fast as possible. It keeps a snapshot of the
+ * engine every few pieces so that seeking to a piece never needs to replay the
+ * whole game from its start.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class ReplayPlayer implements GameListener {
+	// The speeds at which the replay can be played, UNLIMITED being as fast as
+	// the time budget of each update allows
+	public static final int UNLIMITED = 0;
+
+	// How many pieces between two snapshots
+	private static final int KEYFRAME_INTERVAL = 10;
+
+	// How long an update may run when playing as fast as possible, in
+	// nanoseconds
+	private static final long UNLIMITED_BUDGET = 15000000L;
+
+	// The replay, the engine playing it and a copy of it before the first step
+	private Replay replay;
+	private GameEngine engine;
+	private GameEngine start;
+
+	// Where we are in the replay
+	private int tick = 0;
+	private int event = -1;
+	private int stepTimer = 0;
+
+	// How fast we play, and whether we are paused
+	private int speed = 1;
+	private boolean paused = false;
+
+	// We'll forward the events to this listener when playing at normal speed
+	private GameListener listener = null;
+	private boolean seeking = false;
+
+	// The snapshots, one every KEYFRAME_INTERVAL pieces
+	private List<Keyframe> keyframes = new ArrayList<>();
+
+	/**
+	 * 
+	 * A keyframe is a copy of the engine and of where we were in the replay
+	 * 
+	 */
+	private static class Keyframe {
+		private GameEngine engine;
+		private int tick;
+		private int event;
+
+		Keyframe(GameEngine engine, int tick, int event) {
+			this.engine = engine;
+			this.tick = tick;
+			this.event = event;
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a player we only need the replay to play
+	 * 
+	 * @param replay The replay
+	 * 
+	 */
+	public ReplayPlayer(Replay replay) {
+		this.replay = replay;
+
+		engine = replay.createEngine();
+		engine.setListener(this);
+
+		start = replay.createEngine();
+	}
+
+	/**
+	 * 
+	 * Setter for the listener
+	 * 
+	 * @param listener The listener to notify of the game events at normal
+	 *            speed, or null
+	 * 
+	 */
+	public void setListener(GameListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * 
+	 * This method forwards the events of the engine when we play at normal
+	 * speed
+	 * 
+	 */
+	public void onGameEvent(GameEngine engine, GameEvent event) {
+		if (listener != null && speed == 1 && !seeking) {
+			listener.onGameEvent(engine, event);
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays the replay for some time
+	 * 
+	 * @param deltaT The time elapsed since the last update, in milliseconds
+	 * 
+	 */
+	public void update(int deltaT) {
+		if (paused || isFinished()) {
+			return;
+		}
+
+		if (speed == UNLIMITED) {
+			long deadline = System.nanoTime() + UNLIMITED_BUDGET;
+
+			while (!isFinished() && System.nanoTime() < deadline) {
+				step();
+			}
+		}
+		else {
+			stepTimer += deltaT * speed;
+
+			while (stepTimer >= replay.getTickLength() && !isFinished()) {
+				step();
+				stepTimer -= replay.getTickLength();
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays one recorded step
+	 * 
+	 */
+	private void step() {
+		int piecesBefore = engine.getPieceCount();
+
+		event = replay.findEvent(tick, event);
+		engine.step(replay.getEventInput(event), replay.getTickLength());
+		++tick;
+
+		// We'll take a snapshot each time we reach a new keyframe
+		int pieces = engine.getPieceCount();
+
+		if (pieces != piecesBefore && pieces % KEYFRAME_INTERVAL == 0 && pieces / KEYFRAME_INTERVAL > keyframes.size()) {
+			GameEngine snapshot = replay.createEngine();
+			snapshot.copyFrom(engine);
+
+			keyframes.add(new Keyframe(snapshot, tick, event));
+		}
+	}
+
+	/**
+	 * 
+	 * This method jumps to the moment a given piece was dealt
+	 * 
+	 * @param piece The number of the piece, 1 being the first one
+	 * 
+	 */
+	public void seekToPiece(int piece) {
+		piece = Math.max(1, Math.min(piece, replay.getPieceCount()));
+
+		// We'll find the closest snapshot before that piece, if any
+		int keyframe = Math.min(piece / KEYFRAME_INTERVAL, keyframes.size());
+		Keyframe closest = keyframe > 0 ? keyframes.get(keyframe - 1) : null;
+		int closestPiece = closest != null ? closest.engine.getPieceCount() : 0;
+
+		// And start from it unless we are already between it and the piece
+		if (engine.getPieceCount() >= piece || engine.getPieceCount() < closestPiece) {
+			if (closest != null) {
+				engine.copyFrom(closest.engine);
+				tick = closest.tick;
+				event = closest.event;
+			}
+			else {
+				restart();
+			}
+		}
+
+		// Then we'll play until the piece is dealt, which may add snapshots
+		seeking = true;
+
+		while (engine.getPieceCount() < piece && !isFinished()) {
+			step();
+		}
+
+		seeking = false;
+		stepTimer = 0;
+	}
+
+	/**
+	 * 
+	 * This method rewinds the replay to its start
+	 * 
+	 */
+	public void restart() {
+		// Resetting the engine would leave its counters as they are until the
+		// next step, so we'll copy the untouched one instead
+		engine.copyFrom(start);
+
+		tick = 0;
+		event = -1;
+		stepTimer = 0;
+	}
+
+	/**
+	 * 
+	 * Setter for the speed
+	 * 
+	 * @param speed How many times faster than normal to play, or UNLIMITED
+	 * 
+	 */
+	public void setSpeed(int speed) {
+		this.speed = speed;
+		stepTimer = 0;
+	}
+
+	/**
+	 * 
+	 * Getter for the speed
+	 * 
+	 * @return How many times faster than normal we play, or UNLIMITED
+	 * 
+	 */
+	public int getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * 
+	 * This method pauses or resumes the playback
+	 * 
+	 */
+	public void togglePause() {
+		paused = !paused;
+	}
+
+	/**
+	 * 
+	 * This method tells if the whole replay was played
+	 * 
+	 * @return True if the replay is over. False otherwise
+	 * 
+	 */
+	public boolean isFinished() {
+		return tick >= replay.getTickCount() || engine.getState() == GameEngine.State.GAME_OVER;
+	}
+
+	/**
+	 * 
+	 * This method tells if the replay played out the way it was recorded
+	 * 
+	 * @return True if the replay is over with the recorded score. False
+	 *         otherwise
+	 * 
+	 */
+	public boolean isFaithful() {
+		return isFinished() && engine.getScore() == replay.getScore() && engine.getPieceCount() == replay.getPieceCount();
+	}
+
+	/**
+	 * 
+	 * Getter for the engine
+	 * 
+	 * @return The engine playing the replay
+	 * 
+	 */
+	public GameEngine getEngine() {
+		return engine;
+	}
+
+	/**
+	 * 
+	 * Getter for the tick
+	 * 
+	 * @return How many steps of the replay were played
+	 * 
+	 */
+	public int getTick() {
+		return tick;
+	}
+
+	/**
+	 * 
+	 * Getter for the replay
+	 * 
+	 * @return The replay being played
+	 * 
+	 */
+	public Replay getReplay() {
+		return replay;
+	}
+}
@@ -0,0 +1,269 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * 
+ * This class records every game into a replay file, see ReplayFormat. The
+ * events are encoded into memory on the game thread while the files are
+ * written, chunk by chunk, by a background thread so that the game never
+ * waits on the disk. The chunks and the tasks carrying them to the writer are
+ * recycled, so recording doesn't allocate anything while a game is played.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class ReplayRecorder {
+	// The size of the chunks handed to the writer
+	private static final int CHUNK_SIZE = 4096;
+
+	// How many chunks can wait for the writer, and how many are kept for reuse
+	private static final int PENDING_TASKS = 64;
+	private static final int SPARE_TASKS = 4;
+
+	// Where the replays go
+	private File directory;
+
+	// The chunks waiting to be written, and the ones the writer is done with
+	private BlockingQueue<WriteTask> pendingTasks = new ArrayBlockingQueue<>(PENDING_TASKS);
+	private BlockingQueue<WriteTask> spareTasks = new ArrayBlockingQueue<>(SPARE_TASKS);
+
+	// The game being recorded and the chunk being filled
+	private Recording recording = null;
+	private WriteTask task = new WriteTask();
+	private ByteBuffer chunk = task.data;
+
+	// The current tick, the tick of the last event and the inputs it set
+	private int tick;
+	private int lastEventTick;
+	private int lastInput;
+
+	/**
+	 * 
+	 * A recording is a replay file being written
+	 * 
+	 */
+	private static class Recording {
+		private File file;
+		private FileChannel channel = null;
+		private boolean failed = false;
+
+		Recording(File file) {
+			this.file = file;
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a recorder we only need to know where to put the replays
+	 * 
+	 * @param directory The directory where the replays are written
+	 * 
+	 */
+	public ReplayRecorder(File directory) {
+		this.directory = directory;
+
+		Thread writer = new Thread(new Runnable() {
+			public void run() {
+				try {
+					while (true) {
+						WriteTask task = pendingTasks.take();
+						task.run();
+
+						// The chunk can be filled again
+						task.data.clear();
+						spareTasks.offer(task);
+					}
+				} catch (InterruptedException e) {
+					// We are done
+				}
+			}
+		}, "Replay writer");
+
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * 
+	 * This method starts recording a game. It must be called after the engine
+	 * was reset and before its first step.
+	 * 
+	 * @param engine The engine running the game
+	 * 
+	 */
+	public void begin(GameEngine engine) {
+		// A game that didn't finish is dropped
+		if (recording != null) {
+			chunk.clear();
+			flush(true, true);
+		}
+
+		String name = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+		recording = new Recording(new File(directory, "replay-" + name + ReplayFormat.EXTENSION));
+
+		tick = 0;
+		lastEventTick = 0;
+		lastInput = GameEngine.INPUT_NONE;
+
+		// We'll write the header
+		chunk.put(ReplayFormat.MAGIC);
+		chunk.put((byte) ReplayFormat.VERSION);
+		chunk.put((byte) engine.getRandomizerType().ordinal());
+		ReplayFormat.putVarint(chunk, engine.getPit().getWidth());
+		ReplayFormat.putVarint(chunk, engine.getPit().getHeight());
+		ReplayFormat.putVarint(chunk, GameEngine.TICK_LENGTH);
+		ReplayFormat.putVarint(chunk, engine.getAutoShiftDelay());
+		ReplayFormat.putVarint(chunk, engine.getAutoRepeatRate());
+		chunk.putLong(engine.getSeed());
+	}
+
+	/**
+	 * 
+	 * This method records one step of the game
+	 * 
+	 * @param input The inputs given to the engine for that step
+	 * 
+	 */
+	public void record(int input) {
+		if (recording == null) {
+			return;
+		}
+
+		// We only need to write something when the inputs change
+		if (input != lastInput) {
+			if (chunk.remaining() < 2 * ReplayFormat.MAX_VARINT_SIZE) {
+				flush(false, false);
+			}
+
+			ReplayFormat.putVarint(chunk, tick - lastEventTick + 1);
+			ReplayFormat.putVarint(chunk, input);
+
+			lastEventTick = tick;
+			lastInput = input;
+		}
+
+		++tick;
+	}
+
+	/**
+	 * 
+	 * This method ends the recording of a game and writes its trailer
+	 * 
+	 * @param engine The engine that ran the game
+	 * 
+	 */
+	public void finish(GameEngine engine) {
+		if (recording == null) {
+			return;
+		}
+
+		if (chunk.remaining() < 1 + 3 * ReplayFormat.MAX_VARINT_SIZE) {
+			flush(false, false);
+		}
+
+		chunk.put((byte) ReplayFormat.END_OF_EVENTS);
+		ReplayFormat.putVarint(chunk, tick);
+		ReplayFormat.putVarint(chunk, engine.getScore());
+		ReplayFormat.putVarint(chunk, engine.getPieceCount());
+
+		flush(true, false);
+	}
+
+	/**
+	 * 
+	 * This method hands the current chunk to the writer and picks another one
+	 * 
+	 * @param last True if this is the last chunk of the recording
+	 * @param discard True if the recording should be deleted
+	 * 
+	 */
+	private void flush(boolean last, boolean discard) {
+		chunk.flip();
+
+		task.recording = recording;
+		task.last = last;
+		task.discard = discard;
+
+		// We'll only wait if the writer is hopelessly behind
+		try {
+			pendingTasks.put(task);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		task = spareTasks.poll();
+
+		// If the writer is lagging behind we'll need a new chunk
+		if (task == null) {
+			task = new WriteTask();
+		}
+
+		chunk = task.data;
+
+		if (last) {
+			recording = null;
+		}
+	}
+
+	/**
+	 * 
+	 * This task writes a chunk of a recording, on the writer's thread
+	 * 
+	 */
+	private class WriteTask {
+		private ByteBuffer data = ByteBuffer.allocate(CHUNK_SIZE);
+		private Recording recording;
+		private boolean last;
+		private boolean discard;
+
+		void run() {
+			try {
+				if (!recording.failed && !discard) {
+					if (recording.channel == null) {
+						directory.mkdirs();
+						recording.channel = FileChannel.open(recording.file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+								StandardOpenOption.TRUNCATE_EXISTING);
+					}
+
+					while (data.hasRemaining()) {
+						recording.channel.write(data);
+					}
+				}
+			} catch (IOException e) {
+				// We'll stop recording this game but the game goes on
+				recording.failed = true;
+				System.out.println("WARNING: Replay " + recording.file + " could not be written: " + e.getMessage());
+			} finally {
+				if (last) {
+					close();
+				}
+
+				// The task will be reused for another chunk
+				recording = null;
+			}
+		}
+
+		private void close() {
+			try {
+				if (recording.channel != null) {
+					recording.channel.close();
+				}
+			} catch (IOException e) {
+				recording.failed = true;
+			}
+
+			if (recording.failed || discard) {
+				recording.file.delete();
+			}
+		}
+	}
+}
@@ -1,159 +1,244 @@
-package com.dkhalife.projects;
-
-import java.io.File;
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
-
-import org.newdawn.slick.Image;
-import org.newdawn.slick.SlickException;
-import org.newdawn.slick.Sound;
-import org.newdawn.slick.loading.LoadingList;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-/**
- * 
- * This class manages the resources of the game
- * 
- * @author Dany Khalife
- * 
- */
-public abstract class ResourceManager {
-	// We need to store all images and sounds used by the game
-	private static Map<String, Image> images = new HashMap<String, Image>();
-	private static Map<String, Sound> sounds = new HashMap<String, Sound>();
-
-	/**
-	 * 
-	 * This method loads resources from an XML file. The resources are then
-	 * loaded in deferred processing.
-	 * 
-	 * @param path The path to the XML file
-	 * @throws SlickException
-	 * 
-	 */
-	public static void loadResources(String path) throws SlickException {
-		try {
-			// We'll set the processing to deferred
-			LoadingList.setDeferredLoading(true);
-
-			// We'll need to load the resources file into
-			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-			DocumentBuilder db = dbf.newDocumentBuilder();
-			Document document = db.parse(new FileInputStream(new File(path)));
-
-			// We need to normalize the document element
-			document.getDocumentElement().normalize();
-
-			// Next we'll iterate over the resources found
-			NodeList resources = document.getElementsByTagName("resource");
-
-			for (int i = 0; i < resources.getLength(); i++) {
-				Node n = resources.item(i);
-
-				if (n.getNodeType() == Node.ELEMENT_NODE) {
-					// We'll convert the node into an element
-					Element resource = (Element) n;
-
-					// We'll fetch the atribute of the resource
-					String type = resource.getAttribute("type");
-
-					// We'll load the resource into the appropriate category
-					if (type.equals("image")) {
-						addImage(resource);
-					}
-					else if (type.equals("sound")) {
-						addSound(resource);
-					}
-				}
-			}
-		} catch (ParserConfigurationException | SAXException | IOException e) {
-			throw new SlickException("Resources XML file could not be loaded");
-		}
-
-	}
-
-	/**
-	 * 
-	 * Getter for an image resource
-	 * 
-	 * @param id The Id of the image
-	 * @return The loaded image
-	 * 
-	 */
-	public final static Image getImage(String id) {
-		return images.get(id);
-	}
-
-	/**
-	 * 
-	 * This method adds an image resource
-	 * 
-	 * @param resource The resource to add as an image
-	 * @throws SlickException
-	 * 
-	 */
-	private final static void addImage(Element resource) throws SlickException {
-		// We'll get the id and path for this image
-		String id = resource.getAttribute("id");
-		String fileName = resource.getTextContent();
-
-		// We'll make sure we have a valid path
-		if (fileName == null || fileName.length() == 0)
-			throw new SlickException("Image resource [" + id + "] has an invalid path");
-
-		// And we'll try to load it into our cache
-		try {
-			images.put(id, new Image("res/images/" + fileName));
-		} catch (SlickException e) {
-			throw new SlickException("Image resource [" + id + "] could not be loaded", e);
-		}
-	}
-
-	/**
-	 * 
-	 * Getter for a sound resource
-	 * 
-	 * @param id The Id of the sound
-	 * @return The loaded sound
-	 * 
-	 */
-	public final static Sound getSound(String id) {
-		//sounds.get(id).
-		return sounds.get(id);
-	}
-
-	/**
-	 * 
-	 * This method adds a sound resource
-	 * 
-	 * @param resource The resource to add as a sound
-	 * @throws SlickException
-	 * 
-	 */
-	private final static void addSound(Element resource) throws SlickException {
-		// We'll get the id and path for this sound
-		String id = resource.getAttribute("id");
-		String fileName = resource.getTextContent();
-
-		// We'll make sure we have a valid path
-		if (fileName == null || fileName.length() == 0)
-			throw new SlickException("Sound resource [" + id + "] has an invalid path");
-
-		// And we'll try to load it into our cache
-		try {
-			sounds.put(id, new Sound("res/sounds/" + fileName));
-		} catch (SlickException e) {
-			throw new SlickException("Sound resource [" + id + "] could not be loaded", e);
-		}
-	}
-}
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.newdawn.slick.Image;
+import org.newdawn.slick.SlickException;
+
+/**
+ * 
+ * This class manages the resources of the game. They are listed by a manifest
+ * compiled from the XML file, and the ones needed first are loaded before the
+ * others.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public abstract class ResourceManager {
+	// We need to store all images used by the game, the sounds are kept by
+	// the AudioQueue
+	private static Map<String, Image> images = new HashMap<String, Image>();
+
+	// They are loaded in the background
+	private static AssetLoader loader = new AssetLoader(images);
+
+	// The resources there are
+	private static ResourceManifest manifest = null;
+
+	/**
+	 * 
+	 * This method loads the resources listed by the compiled manifest, or by
+	 * the XML file if the manifest is missing or out of date. The resources
+	 * are then decoded in the background and become available as update()
+	 * uploads them, the ones needed first before the others.
+	 * 
+	 * @param xml The path to the XML file
+	 * @param bin The path to the manifest compiled from it
+	 * @param first The IDs of the resources needed first
+	 * @throws SlickException
+	 * 
+	 */
+	public static void loadResources(String xml, String bin, String[] first) throws SlickException {
+		try {
+			manifest = ResourceManifest.read(new File(bin), new File(xml));
+		} catch (IOException e) {
+			System.out.println("WARNING: " + e.getMessage() + ", reading " + xml + " instead");
+
+			try {
+				manifest = ResourceManifest.parse(new File(xml));
+			} catch (IOException e2) {
+				throw new SlickException("Resources XML file could not be loaded", e2);
+			}
+		}
+
+		int count = manifest.getCount();
+		boolean[] queued = new boolean[count];
+		boolean atlasFirst = false;
+
+		for (String id : first) {
+			int i = manifest.indexOf(id);
+
+			if (i < 0) {
+				throw new SlickException("Resource [" + id + "] doesn't exist");
+			}
+
+			atlasFirst |= manifest.isAtlas(i);
+		}
+
+		// The images of the atlas come all at once, so if one of them is
+		// needed first they all are
+		for (int i = 0; i < count; ++i) {
+			if (atlasFirst && manifest.isAtlas(i)) {
+				add(i);
+				queued[i] = true;
+			}
+		}
+
+		for (String id : first) {
+			int i = manifest.indexOf(id);
+
+			if (!queued[i]) {
+				add(i);
+				queued[i] = true;
+			}
+		}
+
+		// And the rest is prefetched
+		for (int i = 0; i < count; ++i) {
+			if (!queued[i]) {
+				add(i);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method makes the resources decoded so far available. It must be
+	 * called on the render thread.
+	 * 
+	 * @param budget How long it may take, in nanoseconds
+	 * @throws SlickException If a resource couldn't be loaded
+	 * 
+	 */
+	public static void update(long budget) throws SlickException {
+		loader.upload(budget);
+	}
+
+	/**
+	 * 
+	 * Getter for the loading progress
+	 * 
+	 * @return The fraction of the resources available, from 0 to 1
+	 * 
+	 */
+	public static float getProgress() {
+		return loader.getProgress();
+	}
+
+	/**
+	 * 
+	 * Getter for the loading progress of some resources
+	 * 
+	 * @param ids The IDs of the resources
+	 * @return The fraction of their bytes available, from 0 to 1
+	 * 
+	 */
+	public static float getProgress(String[] ids) {
+		long total = 0;
+		long loaded = 0;
+
+		for (String id : ids) {
+			int size = manifest.getSize(manifest.indexOf(id));
+
+			total += size;
+
+			if (isReady(id)) {
+				loaded += size;
+			}
+		}
+
+		return total == 0 ? 1 : (float) loaded / total;
+	}
+
+	/**
+	 * 
+	 * This method tells if all the resources are available
+	 * 
+	 * @return True if everything was loaded. False otherwise
+	 * 
+	 */
+	public static boolean isLoaded() {
+		return loader.isDone();
+	}
+
+	/**
+	 * 
+	 * This method tells if some resources are available
+	 * 
+	 * @param ids The IDs of the resources
+	 * @return True if they were all loaded. False otherwise
+	 * 
+	 */
+	public static boolean isLoaded(String[] ids) {
+		for (String id : ids) {
+			if (!isReady(id)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * This method tells if a resource is available
+	 * 
+	 * @param id The ID of the resource
+	 * @return True if it was loaded, or if it is a sound only decoded when
+	 *         played. False otherwise
+	 * 
+	 */
+	private static boolean isReady(String id) {
+		int i = manifest.indexOf(id);
+
+		if (manifest.getType(i) == ResourceManifest.SOUND && !manifest.isPinned(i)) {
+			return true;
+		}
+
+		return loader.isReady(id);
+	}
+
+	/**
+	 * 
+	 * Getter for an image resource
+	 * 
+	 * @param id The Id of the image
+	 * @return The loaded image
+	 * 
+	 */
+	public final static Image getImage(String id) {
+		return images.get(id);
+	}
+
+	/**
+	 * 
+	 * Getter for the atlas, to draw its images in one batch between startUse()
+	 * and endUse()
+	 * 
+	 * @return The image holding all the images marked to be in the atlas
+	 * 
+	 */
+	public final static Image getAtlas() {
+		return loader.getAtlas();
+	}
+
+	/**
+	 * 
+	 * This method adds a resource of the manifest
+	 * 
+	 * @param i The index of the resource
+	 * 
+	 */
+	private final static void add(int i) {
+		String id = manifest.getId(i);
+		String ref = manifest.getRef(i);
+
+		if (manifest.getType(i) == ResourceManifest.IMAGE) {
+			// We'll load it into our cache in the background, packed with the
+			// other sprites if it is drawn along with them
+			loader.addImage(id, ref, manifest.isAtlas(i));
+			return;
+		}
+
+		// The sounds heard all the time are loaded in the background with the
+		// game and kept for good, the others are only decoded when played
+		AudioQueue.addSound(id, ref, manifest.isPinned(i));
+
+		if (manifest.isPinned(i)) {
+			loader.addSound(id, ref);
+		}
+	}
+}
@@ -0,0 +1,469 @@
+package com.dkhalife.projects;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+/**
+ * 
+ * This class lists the resources of the game: their IDs, types, files and
+ * sizes. It is written once from the XML file by the ManifestCompiler into a
+ * binary file the game reads without parsing any XML, which starts with:
+ * 
+ * - The magic number and the version of the format (int, short)
+ * - The checksum of the XML file it was compiled from (int)
+ * - The checksum of the rest of the manifest (int)
+ * - The number of resources and the size of the string pool (short, int)
+ * 
+ * Then comes each resource: its type and flags (bytes), the offsets of its ID
+ * and of its file in the pool (ints) and the size of its file (int). The pool
+ * follows, each string being its length (short) and its UTF-8 bytes.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class ResourceManifest {
+	// The types of resources
+	public static final byte IMAGE = 0;
+	public static final byte SOUND = 1;
+
+	// What can be said of them: images packed into the atlas, and sounds kept
+	// for good
+	private static final byte ATLAS = 1 << 0;
+	private static final byte PINNED = 1 << 1;
+
+	// "TRES", for Tetris resources
+	private static final int MAGIC = 0x54524553;
+	private static final short VERSION = 2;
+
+	// The size of what comes before the part covered by the second checksum,
+	// and of each resource
+	private static final int HEADER_SIZE = 4 + 2 + 4 + 4;
+	private static final int RESOURCE_SIZE = 1 + 1 + 4 + 4 + 4;
+
+	// The resources
+	private List<String> ids = new ArrayList<String>();
+	private List<String> refs = new ArrayList<String>();
+	private byte[] types = new byte[0];
+	private byte[] flags = new byte[0];
+	private int[] sizes = new int[0];
+
+	// The checksum of the XML file this manifest comes from
+	private int checksum;
+
+	/**
+	 * 
+	 * This method reads a manifest from the XML file
+	 * 
+	 * @param xml The XML file
+	 * @return The manifest
+	 * @throws IOException If the file couldn't be read or isn't valid
+	 * 
+	 */
+	public static ResourceManifest parse(File xml) throws IOException {
+		ResourceManifest manifest = new ResourceManifest();
+		manifest.checksum = checksum(xml);
+
+		try {
+			// We'll need to load the resources file into
+			DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+			DocumentBuilder db = dbf.newDocumentBuilder();
+			Document document = db.parse(xml);
+
+			// We need to normalize the document element
+			document.getDocumentElement().normalize();
+
+			// Next we'll iterate over the resources found
+			NodeList resources = document.getElementsByTagName("resource");
+
+			for (int i = 0; i < resources.getLength(); i++) {
+				Node n = resources.item(i);
+
+				if (n.getNodeType() == Node.ELEMENT_NODE) {
+					manifest.add((Element) n);
+				}
+			}
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Resources XML file is not valid", e);
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * 
+	 * This method reads a manifest compiled from an XML file
+	 * 
+	 * @param bin The compiled manifest
+	 * @param xml The XML file it was compiled from
+	 * @return The manifest
+	 * @throws IOException If the manifest couldn't be read, is corrupt, or if
+	 *             the XML file changed since it was compiled
+	 * 
+	 */
+	public static ResourceManifest read(File bin, File xml) throws IOException {
+		ResourceManifest manifest = new ResourceManifest();
+		byte[] data = Files.readAllBytes(bin.toPath());
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+			if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+				throw new IOException("Not a resources manifest: " + bin);
+			}
+
+			manifest.checksum = in.readInt();
+
+			// It is only good as long as the XML file is the same
+			if (manifest.checksum != checksum(xml)) {
+				throw new IOException("The resources manifest is out of date: " + bin);
+			}
+
+			// And as long as nothing damaged it, which we check before
+			// trusting any of the sizes it holds
+			int bodyChecksum = in.readInt();
+			CRC32 crc = new CRC32();
+			crc.update(data, HEADER_SIZE, data.length - HEADER_SIZE);
+
+			if ((int) crc.getValue() != bodyChecksum) {
+				throw new IOException("The resources manifest is corrupt: " + bin);
+			}
+
+			int count = in.readUnsignedShort();
+			int poolSize = in.readInt();
+
+			if (poolSize < 0 || poolSize > data.length || count * RESOURCE_SIZE > data.length) {
+				throw new IOException("The resources manifest is corrupt: " + bin);
+			}
+
+			int[] idOffsets = new int[count];
+			int[] refOffsets = new int[count];
+			byte[] pool = new byte[poolSize];
+
+			manifest.types = new byte[count];
+			manifest.flags = new byte[count];
+			manifest.sizes = new int[count];
+
+			for (int i = 0; i < count; ++i) {
+				manifest.types[i] = in.readByte();
+				manifest.flags[i] = in.readByte();
+				idOffsets[i] = in.readInt();
+				refOffsets[i] = in.readInt();
+				manifest.sizes[i] = in.readInt();
+			}
+
+			in.readFully(pool);
+
+			for (int i = 0; i < count; ++i) {
+				manifest.ids.add(getString(pool, idOffsets[i]));
+				manifest.refs.add(getString(pool, refOffsets[i]));
+			}
+		} catch (EOFException | IndexOutOfBoundsException e) {
+			throw new IOException("The resources manifest is corrupt: " + bin, e);
+		}
+
+		return manifest;
+	}
+
+	/**
+	 * 
+	 * This method writes this manifest in its binary form
+	 * 
+	 * @param bin Where to write it
+	 * @throws IOException If it couldn't be written
+	 * 
+	 */
+	public void write(File bin) throws IOException {
+		ByteArrayOutputStream pool = new ByteArrayOutputStream();
+		DataOutputStream strings = new DataOutputStream(pool);
+		int count = getCount();
+
+		if (count > 0xFFFF) {
+			throw new IOException("Too many resources: " + count);
+		}
+
+		// We'll lay out the strings first to know where they are
+		int[] idOffsets = new int[count];
+		int[] refOffsets = new int[count];
+
+		for (int i = 0; i < count; ++i) {
+			idOffsets[i] = putString(strings, ids.get(i));
+			refOffsets[i] = putString(strings, refs.get(i));
+		}
+
+		// Then the rest of the manifest, to know its checksum
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		DataOutputStream resources = new DataOutputStream(body);
+
+		resources.writeShort(count);
+		resources.writeInt(pool.size());
+
+		for (int i = 0; i < count; ++i) {
+			resources.writeByte(types[i]);
+			resources.writeByte(flags[i]);
+			resources.writeInt(idOffsets[i]);
+			resources.writeInt(refOffsets[i]);
+			resources.writeInt(sizes[i]);
+		}
+
+		pool.writeTo(resources);
+
+		CRC32 crc = new CRC32();
+		crc.update(body.toByteArray());
+
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(bin)))) {
+			out.writeInt(MAGIC);
+			out.writeShort(VERSION);
+			out.writeInt(checksum);
+			out.writeInt((int) crc.getValue());
+			body.writeTo(out);
+		}
+	}
+
+	/**
+	 * 
+	 * This method adds a resource from its XML element
+	 * 
+	 * @param resource The element
+	 * @throws IOException If the resource isn't valid
+	 * 
+	 */
+	private void add(Element resource) throws IOException {
+		// We'll get the id, type and path for this resource
+		String id = resource.getAttribute("id");
+		String type = resource.getAttribute("type");
+		String fileName = resource.getTextContent();
+
+		// We'll make sure we have a valid path
+		if (fileName == null || fileName.length() == 0) {
+			throw new IOException("Resource [" + id + "] has an invalid path");
+		}
+
+		byte kind;
+		byte flag = 0;
+		String ref;
+
+		if (type.equals("image")) {
+			kind = IMAGE;
+			ref = "res/images/" + fileName;
+
+			if ("true".equals(resource.getAttribute("atlas"))) {
+				flag |= ATLAS;
+			}
+		}
+		else if (type.equals("sound")) {
+			kind = SOUND;
+			ref = "res/sounds/" + fileName;
+
+			if ("true".equals(resource.getAttribute("pinned"))) {
+				flag |= PINNED;
+			}
+		}
+		else {
+			// We don't know what to do with it
+			return;
+		}
+
+		int count = getCount();
+
+		ids.add(id);
+		refs.add(ref);
+		types = append(types, kind);
+		flags = append(flags, flag);
+		sizes = Arrays.copyOf(sizes, count + 1);
+
+		// The size helps telling how far the loading is, it doesn't need to be
+		// right
+		sizes[count] = (int) new File(ref).length();
+	}
+
+	/**
+	 * 
+	 * Getter for the number of resources
+	 * 
+	 * @return How many resources there are
+	 * 
+	 */
+	public int getCount() {
+		return ids.size();
+	}
+
+	/**
+	 * 
+	 * Getter for the index of a resource
+	 * 
+	 * @param id The ID of the resource
+	 * @return Its index, or -1 if there is no such resource
+	 * 
+	 */
+	public int indexOf(String id) {
+		return ids.indexOf(id);
+	}
+
+	/**
+	 * 
+	 * Getter for the ID of a resource
+	 * 
+	 * @param i The index of the resource
+	 * @return Its ID
+	 * 
+	 */
+	public String getId(int i) {
+		return ids.get(i);
+	}
+
+	/**
+	 * 
+	 * Getter for the file of a resource
+	 * 
+	 * @param i The index of the resource
+	 * @return The path to its file
+	 * 
+	 */
+	public String getRef(int i) {
+		return refs.get(i);
+	}
+
+	/**
+	 * 
+	 * Getter for the type of a resource
+	 * 
+	 * @param i The index of the resource
+	 * @return IMAGE or SOUND
+	 * 
+	 */
+	public byte getType(int i) {
+		return types[i];
+	}
+
+	/**
+	 * 
+	 * Getter for the size of a resource
+	 * 
+	 * @param i The index of the resource
+	 * @return The size of its file, in bytes
+	 * 
+	 */
+	public int getSize(int i) {
+		return sizes[i];
+	}
+
+	/**
+	 * 
+	 * This method tells if an image is packed into the atlas
+	 * 
+	 * @param i The index of the resource
+	 * @return True if it is. False otherwise
+	 * 
+	 */
+	public boolean isAtlas(int i) {
+		return (flags[i] & ATLAS) != 0;
+	}
+
+	/**
+	 * 
+	 * This method tells if a sound is kept for good
+	 * 
+	 * @param i The index of the resource
+	 * @return True if it is loaded with the game. False if it is only decoded
+	 *         when played
+	 * 
+	 */
+	public boolean isPinned(int i) {
+		return (flags[i] & PINNED) != 0;
+	}
+
+	/**
+	 * 
+	 * This method computes the checksum of a text file, leaving out the
+	 * carriage returns so that a checkout with other line endings doesn't
+	 * change it
+	 * 
+	 * @param file The file
+	 * @return Its CRC32
+	 * @throws IOException If it couldn't be read
+	 * 
+	 */
+	private static int checksum(File file) throws IOException {
+		CRC32 crc = new CRC32();
+
+		for (byte b : Files.readAllBytes(file.toPath())) {
+			if (b != '\r') {
+				crc.update(b);
+			}
+		}
+
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * 
+	 * This method adds a string to the pool
+	 * 
+	 * @param pool The pool
+	 * @param s The string
+	 * @return Its offset in the pool
+	 * @throws IOException Never, the pool being in memory
+	 * 
+	 */
+	private static int putString(DataOutputStream pool, String s) throws IOException {
+		int offset = pool.size();
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+
+		pool.writeShort(bytes.length);
+		pool.write(bytes);
+
+		return offset;
+	}
+
+	/**
+	 * 
+	 * This method reads a string from the pool
+	 * 
+	 * @param pool The pool
+	 * @param offset The offset of the string
+	 * @return The string
+	 * 
+	 */
+	private static String getString(byte[] pool, int offset) {
+		int length = ((pool[offset] & 0xFF) << 8) | (pool[offset + 1] & 0xFF);
+
+		return new String(pool, offset + 2, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * 
+	 * This method appends a byte to an array
+	 * 
+	 * @param array The array
+	 * @param b The byte
+	 * @return A copy of the array with the byte at its end
+	 * 
+	 */
+	private static byte[] append(byte[] array, byte b) {
+		byte[] copy = Arrays.copyOf(array, array.length + 1);
+		copy[array.length] = b;
+
+		return copy;
+	}
+}
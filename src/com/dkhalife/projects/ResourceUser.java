@@ -0,0 +1,20 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This interface is implemented by the states that need resources, which are
+ * loaded before the state is entered while the others load in the background
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public interface ResourceUser {
+	/**
+	 * 
+	 * Getter for the resources needed
+	 * 
+	 * @return The IDs of the images and pinned sounds the state uses
+	 * 
+	 */
+	String[] getResources();
+}
@@ -0,0 +1,453 @@
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * 
+ * This class stores the high scores in an append-only journal file. The file
+ * starts with the MAGIC bytes and the VERSION, followed by one record per
+ * score: the score as an int, the time as a long, the length of the name as a
+ * byte, the name in UTF-8 and a CRC32 of all of that as an int. A record that
+ * was cut short or doesn't match its checksum ends the journal.
+ * 
+ * Records are only ever appended, and the journal is compacted from time to
+ * time by rewriting the scores still in the table. All the writes happen on a
+ * background thread so that the game never waits on the disk, and close()
+ * waits for them before the game exits.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class ScoreJournal {
+	// The bytes every journal starts with
+	public static final byte[] MAGIC = { 'T', 'S', 'C', 'J' };
+
+	// The version of the format
+	public static final int VERSION = 1;
+
+	// How long we wait for the writes left when the journal is closed, in
+	// seconds
+	private static final int CLOSE_TIMEOUT = 5;
+
+	// The size of the header, and of a record without its name
+	private static final int HEADER_SIZE = MAGIC.length + 1;
+	private static final int RECORD_SIZE = 4 + 8 + 1 + 4;
+
+	// The names are stored in UTF-8
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// The journal and the file it replaces
+	private File file;
+	private File legacyFile;
+
+	// How many records the journal holds, and whether its end is damaged
+	private int recordCount = 0;
+	private boolean damaged = false;
+
+	// The thread doing all the writes, in order
+	private ExecutorService writer;
+
+	/**
+	 * 
+	 * To construct a journal we need its file and the file of the old format,
+	 * which is migrated the first time
+	 * 
+	 * @param file The journal file
+	 * @param legacyFile The serialized scores of older versions
+	 * 
+	 */
+	public ScoreJournal(File file, File legacyFile) {
+		this.file = file;
+		this.legacyFile = legacyFile;
+
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "Score writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method reads all the scores of the journal
+	 * 
+	 * @return The scores, in the order they were made
+	 * 
+	 */
+	public List<HighscoreEntry> load() {
+		List<HighscoreEntry> entries = new ArrayList<>();
+
+		recordCount = 0;
+		damaged = false;
+
+		if (!file.exists()) {
+			if (legacyFile.exists()) {
+				migrate(entries);
+			}
+
+			return entries;
+		}
+
+		ByteBuffer data;
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			data = ByteBuffer.allocate((int) channel.size());
+
+			while (data.hasRemaining() && channel.read(data) >= 0) {
+			}
+		} catch (IOException e) {
+			System.out.println("WARNING: Scores " + file + " could not be read: " + e.getMessage());
+			return entries;
+		}
+
+		data.flip();
+
+		// A journal we can't read is kept aside, we'll start a new one
+		byte[] magic = new byte[MAGIC.length];
+
+		if (data.remaining() < HEADER_SIZE || !Arrays.equals(getBytes(data, magic), MAGIC) || data.get() != VERSION) {
+			System.out.println("WARNING: Scores " + file + " is not a journal this version can read");
+			file.renameTo(new File(file.getPath() + ".bad"));
+			return entries;
+		}
+
+		while (data.hasRemaining()) {
+			HighscoreEntry entry = readRecord(data);
+
+			// What follows a damaged record is lost, the next compaction will
+			// drop it
+			if (entry == null) {
+				damaged = true;
+				break;
+			}
+
+			entries.add(entry);
+			++recordCount;
+		}
+
+		return entries;
+	}
+
+	/**
+	 * 
+	 * This method appends a score to the journal, in the background
+	 * 
+	 * @param entry The score
+	 * 
+	 */
+	public void append(HighscoreEntry entry) {
+		if (writer.isShutdown()) {
+			System.out.println("WARNING: Score could not be saved to " + file + ", the journal is closed");
+			return;
+		}
+
+		final ByteBuffer record = ByteBuffer.allocate(recordSize(entry));
+
+		putRecord(record, entry);
+		record.flip();
+
+		++recordCount;
+
+		writer.execute(new Runnable() {
+			public void run() {
+				try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+					// A new journal starts with its header
+					if (channel.size() == 0) {
+						ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+						putHeader(header);
+						header.flip();
+						write(channel, header);
+					}
+
+					write(channel, record);
+				} catch (IOException e) {
+					System.out.println("WARNING: Score could not be saved to " + file + ": " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method rewrites the journal with only the given scores, in the
+	 * background
+	 * 
+	 * @param entries The scores to keep
+	 * 
+	 */
+	public void compact(List<HighscoreEntry> entries) {
+		// The journal is left as it is once closed
+		if (writer.isShutdown()) {
+			return;
+		}
+
+		int size = HEADER_SIZE;
+
+		for (HighscoreEntry entry : entries) {
+			size += recordSize(entry);
+		}
+
+		final ByteBuffer data = ByteBuffer.allocate(size);
+		putHeader(data);
+
+		for (HighscoreEntry entry : entries) {
+			putRecord(data, entry);
+		}
+
+		data.flip();
+
+		recordCount = entries.size();
+		damaged = false;
+
+		writer.execute(new Runnable() {
+			public void run() {
+				try {
+					writeCompacted(data);
+				} catch (IOException e) {
+					System.out.println("WARNING: Scores " + file + " could not be compacted: " + e.getMessage());
+				}
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * Getter for the number of records
+	 * 
+	 * @return How many records the journal holds
+	 * 
+	 */
+	public int getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * 
+	 * This method finishes the writes queued so far and stops the writer, so
+	 * that no score is lost when the game exits
+	 * 
+	 */
+	public void close() {
+		writer.shutdown();
+
+		try {
+			if (!writer.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+				System.out.println("WARNING: Scores " + file + " could not be written in time");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 
+	 * This method tells if the end of the journal was found damaged
+	 * 
+	 * @return True if some records couldn't be read. False otherwise
+	 * 
+	 */
+	public boolean isDamaged() {
+		return damaged;
+	}
+
+	/**
+	 * 
+	 * This method writes a whole new journal next to the old one then replaces
+	 * it, so that a crash never leaves us without scores
+	 * 
+	 * @param data The content of the new journal
+	 * @throws IOException If the journal can't be written
+	 * 
+	 */
+	private void writeCompacted(ByteBuffer data) throws IOException {
+		File temp = new File(file.getPath() + ".tmp");
+
+		try (FileChannel channel = FileChannel.open(temp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(channel, data);
+			channel.force(true);
+		}
+
+		try {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * 
+	 * This method reads the serialized scores of older versions and turns them
+	 * into a journal
+	 * 
+	 * @param entries The list to add the old scores to
+	 * 
+	 */
+	@SuppressWarnings("unchecked")
+	private void migrate(List<HighscoreEntry> entries) {
+		try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(legacyFile))) {
+			Map<Integer, String> scores = (Map<Integer, String>) in.readObject();
+			long time = legacyFile.lastModified();
+
+			for (Map.Entry<Integer, String> score : scores.entrySet()) {
+				entries.add(new HighscoreEntry(score.getValue(), score.getKey(), time));
+			}
+		} catch (IOException | ClassNotFoundException | ClassCastException e) {
+			System.out.println("WARNING: Old scores " + legacyFile + " could not be read: " + e.getMessage());
+			return;
+		}
+
+		// The old file is only kept aside once the journal is written
+		compact(entries);
+
+		writer.execute(new Runnable() {
+			public void run() {
+				if (file.exists()) {
+					legacyFile.renameTo(new File(legacyFile.getPath() + ".old"));
+				}
+			}
+		});
+	}
+
+	/**
+	 * 
+	 * This method reads one record
+	 * 
+	 * @param data The journal, positioned at the record
+	 * @return The score, or null if the record is cut short or damaged
+	 * 
+	 */
+	private static HighscoreEntry readRecord(ByteBuffer data) {
+		int start = data.position();
+
+		try {
+			int score = data.getInt();
+			long time = data.getLong();
+			byte[] name = new byte[data.get() & 0xFF];
+			data.get(name);
+
+			CRC32 crc = new CRC32();
+			crc.update(data.array(), start, data.position() - start);
+
+			if ((int) crc.getValue() != data.getInt()) {
+				return null;
+			}
+
+			return new HighscoreEntry(new String(name, UTF8), score, time);
+		} catch (BufferUnderflowException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * 
+	 * This method writes one record
+	 * 
+	 * @param data The buffer to write to
+	 * @param entry The score
+	 * 
+	 */
+	private static void putRecord(ByteBuffer data, HighscoreEntry entry) {
+		byte[] name = encodeName(entry);
+		int start = data.position();
+
+		data.putInt(entry.getScore());
+		data.putLong(entry.getTime());
+		data.put((byte) name.length);
+		data.put(name);
+
+		CRC32 crc = new CRC32();
+		crc.update(data.array(), start, data.position() - start);
+
+		data.putInt((int) crc.getValue());
+	}
+
+	/**
+	 * 
+	 * This method writes the header of a journal
+	 * 
+	 * @param data The buffer to write to
+	 * 
+	 */
+	private static void putHeader(ByteBuffer data) {
+		data.put(MAGIC);
+		data.put((byte) VERSION);
+	}
+
+	/**
+	 * 
+	 * This method computes the size of a record
+	 * 
+	 * @param entry The score
+	 * @return The size of its record, in bytes
+	 * 
+	 */
+	private static int recordSize(HighscoreEntry entry) {
+		return RECORD_SIZE + encodeName(entry).length;
+	}
+
+	/**
+	 * 
+	 * This method encodes a name, cut to what its length byte can hold
+	 * 
+	 * @param entry The score
+	 * @return The name in UTF-8
+	 * 
+	 */
+	private static byte[] encodeName(HighscoreEntry entry) {
+		byte[] name = entry.getName().getBytes(UTF8);
+
+		return name.length > 255 ? Arrays.copyOf(name, 255) : name;
+	}
+
+	/**
+	 * 
+	 * This method fills an array from a buffer
+	 * 
+	 * @param data The buffer to read from
+	 * @param bytes The array to fill
+	 * @return The array
+	 * 
+	 */
+	private static byte[] getBytes(ByteBuffer data, byte[] bytes) {
+		data.get(bytes);
+		return bytes;
+	}
+
+	/**
+	 * 
+	 * This method writes a whole buffer to a channel
+	 * 
+	 * @param channel The channel
+	 * @param data The buffer
+	 * @throws IOException If the write fails
+	 * 
+	 */
+	private static void write(FileChannel channel, ByteBuffer data) throws IOException {
+		while (data.hasRemaining()) {
+			channel.write(data);
+		}
+	}
+}
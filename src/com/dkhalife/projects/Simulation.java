@@ -0,0 +1,306 @@
+package com.dkhalife.projects;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 
+ * This class plays a game on its own thread, stepping the engine at a fixed
+ * rate no matter how fast the screen draws it. Each step takes the keys
+ * pressed up to the time it stands for, and after every batch of steps the
+ * game is published as a snapshot for the screen to draw.
+ * 
+ * The sounds of the events are handed to the AudioQueue straight away, and in
+ * a versus game the link to the other player is polled here as well. When an
+ * AutoPlayer is set, it presses the keys instead of the player, who can still
+ * pause the game.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class Simulation implements Runnable, GameListener {
+	// The length of a step, in nanoseconds
+	private static final long TICK_NANOS = GameEngine.TICK_LENGTH * 1000000L;
+
+	// We won't catch up on more steps than this at once, about a tenth of a
+	// second
+	private static final int MAX_STEPS_PER_BATCH = 25;
+
+	// The game, the keys pressed and where the snapshots go
+	private GameEngine engine;
+	private InputQueue inputs;
+	private SnapshotBuffer snapshots;
+
+	// The recording of the game and the other player, either may be null
+	private ReplayRecorder recorder = null;
+	private VersusLink versus = null;
+
+	// Who plays instead of the player, set from any thread, and the one the
+	// thread last asked
+	private volatile AutoPlayer autoPlayer = null;
+	private AutoPlayer playing = null;
+
+	// The thread stepping the game
+	private Thread thread = null;
+	private volatile boolean running = false;
+	private long tick = 0;
+
+	/**
+	 * 
+	 * To construct a simulation we need the game it plays, where the keys come
+	 * from and where the snapshots go
+	 * 
+	 * @param engine The engine, only touched by the simulation while it runs
+	 * @param inputs The keys pressed, only taken by the simulation while it
+	 *            runs
+	 * @param snapshots The snapshots of the game
+	 * 
+	 */
+	public Simulation(GameEngine engine, InputQueue inputs, SnapshotBuffer snapshots) {
+		this.engine = engine;
+		this.inputs = inputs;
+		this.snapshots = snapshots;
+	}
+
+	/**
+	 * 
+	 * This method starts playing the game, which must have been reset
+	 * 
+	 * @param recorder The recorder the game was begun with, or null
+	 * @param versus The link to the other player, or null
+	 * 
+	 */
+	public void start(ReplayRecorder recorder, VersusLink versus) {
+		this.recorder = recorder;
+		this.versus = versus;
+
+		tick = 0;
+		playing = null;
+		engine.setListener(this);
+
+		// The new game is published before the thread starts, so that the
+		// screen never draws the previous one once we return
+		publish();
+
+		running = true;
+		thread = new Thread(this, "Simulation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * 
+	 * This method stops playing the game and waits for the thread to be done
+	 * with it
+	 * 
+	 */
+	public void stop() {
+		if (thread == null) {
+			return;
+		}
+
+		running = false;
+		LockSupport.unpark(thread);
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		thread = null;
+	}
+
+	/**
+	 * 
+	 * This method steps the game until it is over or stopped
+	 * 
+	 */
+	public void run() {
+		long next = System.nanoTime();
+
+		while (running) {
+			long now = System.nanoTime();
+
+			if (now - next < 0) {
+				LockSupport.parkNanos(next - now);
+				continue;
+			}
+
+			// We'll play every step that is due, unless we fell too far behind
+			// in which case we'll just drop the lost time
+			int steps = 0;
+
+			while (now - next >= 0) {
+				step(next);
+				next += TICK_NANOS;
+
+				if (++steps == MAX_STEPS_PER_BATCH) {
+					next = now + TICK_NANOS;
+					break;
+				}
+			}
+
+			if (engine.getState() == GameEngine.State.GAME_OVER) {
+				// The recording or the versus game is over
+				if (recorder != null) {
+					recorder.finish(engine);
+				}
+
+				if (versus != null) {
+					versus.finish();
+				}
+
+				running = false;
+			}
+
+			publish();
+		}
+	}
+
+	/**
+	 * 
+	 * This method plays one step
+	 * 
+	 * @param time The time the step stands for, as given by System.nanoTime()
+	 * 
+	 */
+	private void step(long time) {
+		if (engine.getState() == GameEngine.State.GAME_OVER) {
+			return;
+		}
+
+		long inputStart = FrameProfiler.start();
+
+		if (versus != null) {
+			versus.poll();
+
+			// We'll wait for the other player to start, unless they're gone,
+			// and the keys pressed meanwhile don't count
+			if (!versus.isReady() && !versus.isClosed()) {
+				inputs.take(time);
+				FrameProfiler.end(FrameProfiler.Phase.INPUT, inputStart);
+				return;
+			}
+
+			engine.addGarbage(versus.takeGarbage());
+		}
+
+		int input = inputs.take(time);
+		AutoPlayer bot = autoPlayer;
+
+		if (bot != null) {
+			// A bot taking over starts with the current piece afresh
+			if (bot != playing) {
+				bot.reset();
+			}
+
+			input = bot.getInput(engine) | (input & (GameEngine.INPUT_PAUSE << GameEngine.PRESSED_SHIFT));
+		}
+
+		playing = bot;
+
+		FrameProfiler.end(FrameProfiler.Phase.INPUT, inputStart);
+
+		// A step that begins by clearing lines does nothing else, so its time
+		// is the time of the line clear
+		boolean clearing = engine.getState() == GameEngine.State.LINE_DESTRUCTION;
+
+		long stepStart = FrameProfiler.start();
+		engine.step(input, GameEngine.TICK_LENGTH);
+		long stepEnd = FrameProfiler.start();
+
+		FrameProfiler.record(FrameProfiler.Phase.STEP, stepEnd - stepStart);
+
+		if (clearing) {
+			FrameProfiler.record(FrameProfiler.Phase.LINE_CLEAR, stepEnd - stepStart);
+		}
+
+		if (recorder != null) {
+			recorder.record(input);
+		}
+
+		++tick;
+	}
+
+	/**
+	 * 
+	 * This method publishes a snapshot of the game, and sends our pit to the
+	 * other player
+	 * 
+	 */
+	private void publish() {
+		GameSnapshot snapshot = snapshots.getBack();
+		snapshot.copyFrom(engine, tick);
+
+		if (versus != null) {
+			versus.sendBoard(engine.getPit(), engine.getScore());
+			snapshot.copyFrom(versus);
+		}
+
+		snapshots.publish();
+	}
+
+	/**
+	 * 
+	 * This method plays the sound of each event, and sends garbage to the
+	 * other player when we clear several lines at once
+	 * 
+	 */
+	public void onGameEvent(GameEngine engine, GameEvent event) {
+		// This only sets a flag, the audio thread does the rest
+		AudioQueue.post(event);
+
+		if (versus != null) {
+			switch (event) {
+				case DOUBLE:
+					versus.sendGarbage(1);
+				break;
+
+				case TRIPLE:
+					versus.sendGarbage(2);
+				break;
+
+				case TETRIS:
+					versus.sendGarbage(4);
+				break;
+
+				default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * Setter for who plays instead of the player
+	 * 
+	 * @param autoPlayer The bot pressing the keys, or null to give them back
+	 *            to the player
+	 * 
+	 */
+	public void setAutoPlayer(AutoPlayer autoPlayer) {
+		this.autoPlayer = autoPlayer;
+	}
+
+	/**
+	 * 
+	 * Getter for who plays instead of the player
+	 * 
+	 * @return The bot pressing the keys, or null if the player does
+	 * 
+	 */
+	public AutoPlayer getAutoPlayer() {
+		return autoPlayer;
+	}
+
+	/**
+	 * 
+	 * This method tells if the game is being played
+	 * 
+	 * @return True if the thread is stepping the game. False otherwise
+	 * 
+	 */
+	public boolean isRunning() {
+		return running;
+	}
+}
@@ -0,0 +1,86 @@
+package com.dkhalife.projects;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 
+ * This class hands snapshots of the game from the simulation to the screen
+ * without either of them ever waiting for the other. It holds three of them:
+ * the one being filled, the one being drawn, and the last one published in
+ * between. Publishing swaps the filled one with the one in between, and the
+ * screen swaps the one it drew with it whenever a newer one is there.
+ * 
+ * The simulation may publish many snapshots between two frames, the screen
+ * only ever sees the newest one.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class SnapshotBuffer {
+	// The index of the snapshot in between is kept with this bit, set when it
+	// wasn't drawn yet
+	private static final int FRESH = 1 << 2;
+	private static final int INDEX = FRESH - 1;
+
+	// The snapshots
+	private GameSnapshot[] snapshots = new GameSnapshot[3];
+
+	// The one being filled, only seen by the simulation
+	private int back = 0;
+
+	// The one in between, shared by both
+	private AtomicInteger middle = new AtomicInteger(1);
+
+	// And the one being drawn, only seen by the screen
+	private int front = 2;
+
+	/**
+	 * 
+	 * To construct a buffer we need the size of the pits
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * 
+	 */
+	public SnapshotBuffer(int width, int height) {
+		for (int i = 0; i < snapshots.length; ++i) {
+			snapshots[i] = new GameSnapshot(width, height);
+		}
+	}
+
+	/**
+	 * 
+	 * Getter for the snapshot to fill, only for the simulation
+	 * 
+	 * @return The snapshot, until the next call to publish()
+	 * 
+	 */
+	public GameSnapshot getBack() {
+		return snapshots[back];
+	}
+
+	/**
+	 * 
+	 * This method makes the snapshot just filled the newest one, only for the
+	 * simulation
+	 * 
+	 */
+	public void publish() {
+		back = middle.getAndSet(back | FRESH) & INDEX;
+	}
+
+	/**
+	 * 
+	 * Getter for the newest snapshot, only for the screen
+	 * 
+	 * @return The snapshot, which stays the same until the next call
+	 * 
+	 */
+	public GameSnapshot getFront() {
+		if ((middle.get() & FRESH) != 0) {
+			front = middle.getAndSet(front) & INDEX;
+		}
+
+		return snapshots[front];
+	}
+}
@@ -0,0 +1,327 @@
+package com.dkhalife.projects;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.lwjgl.openal.AL10;
+import org.newdawn.slick.openal.OggData;
+import org.newdawn.slick.openal.OggDecoder;
+
+/**
+ * 
+ * This class keeps the decoded samples of the sounds in OpenAL buffers, within
+ * a budget. The sounds played all the time are pinned: they are decoded while
+ * the game loads and never leave. The others are only decoded in the
+ * background the first time they are played, and the ones played the longest
+ * time ago are let go whenever the samples kept go over the budget.
+ * 
+ * Everything but the registering of the sounds and the pinned buffers happens
+ * on the audio thread.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class SoundCache {
+	// How many bytes of samples are kept by default, in KiB
+	public static final int DEFAULT_BUDGET = 4096;
+
+	// A sound decoded too long after it was asked for isn't worth playing
+	// anymore, in nanoseconds
+	private static final long MAX_LATENESS = 250000000L;
+
+	// The budget and how much of it is used, in bytes
+	private long budget = DEFAULT_BUDGET * 1024L;
+	private AtomicLong resident = new AtomicLong();
+
+	// The files of the sounds and whether they are pinned, by ID
+	private String[] refs;
+	private boolean[] pinned;
+
+	// The buffers holding the sounds, 0 when they aren't kept
+	private AtomicIntegerArray buffers;
+
+	// The size of the sounds kept, when they were last played, whether they
+	// are being decoded and whether they couldn't be, only touched by the
+	// audio thread
+	private int[] sizes;
+	private long[] lastPlayed;
+	private boolean[] decoding;
+	private boolean[] failed;
+
+	// The thread decoding the sounds, and the sounds it decoded
+	private ExecutorService decoder = null;
+	private Queue<Decoded> decoded = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * 
+	 * A sound that was decoded and only needs to be uploaded
+	 * 
+	 */
+	private static class Decoded {
+		private int id;
+		private OggData data;
+
+		Decoded(int id, OggData data) {
+			this.id = id;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * 
+	 * To construct a cache we need how many sounds there can be
+	 * 
+	 * @param capacity The most sounds there can be
+	 * 
+	 */
+	public SoundCache(int capacity) {
+		refs = new String[capacity];
+		pinned = new boolean[capacity];
+		buffers = new AtomicIntegerArray(capacity);
+		sizes = new int[capacity];
+		lastPlayed = new long[capacity];
+		decoding = new boolean[capacity];
+		failed = new boolean[capacity];
+	}
+
+	/**
+	 * 
+	 * Setter for the budget
+	 * 
+	 * @param budget How many bytes of samples may be kept, the pinned sounds
+	 *            being kept even past it
+	 * 
+	 */
+	public void setBudget(long budget) {
+		if (budget < 0) {
+			throw new IllegalArgumentException("The budget can't be negative");
+		}
+
+		this.budget = budget;
+	}
+
+	/**
+	 * 
+	 * This method tells the cache where a sound is
+	 * 
+	 * @param id The ID of the sound
+	 * @param ref The path to the sound, an OGG file
+	 * @param pin True if the sound is uploaded with setPinned() and kept for
+	 *            good. False if the cache decodes it when needed
+	 * 
+	 */
+	public synchronized void register(int id, String ref, boolean pin) {
+		refs[id] = ref;
+		pinned[id] = pin;
+	}
+
+	/**
+	 * 
+	 * This method hands a pinned sound to the cache, which keeps it for good
+	 * 
+	 * @param id The ID of the sound
+	 * @param buffer The buffer holding its samples
+	 * @param size The size of the samples, in bytes
+	 * 
+	 */
+	public void setPinned(int id, int buffer, int size) {
+		resident.addAndGet(size);
+		buffers.set(id, buffer);
+	}
+
+	/**
+	 * 
+	 * Getter for the buffer of a sound, on the audio thread. A sound that isn't
+	 * kept is decoded in the background, and played once it is if it wasn't
+	 * too long.
+	 * 
+	 * @param id The ID of the sound
+	 * @return The buffer, or 0 if it isn't ready
+	 * 
+	 */
+	public int getBuffer(int id) {
+		int buffer = buffers.get(id);
+
+		if (buffer != 0) {
+			lastPlayed[id] = System.nanoTime();
+			return buffer;
+		}
+
+		final String ref = getRef(id);
+
+		// The pinned sounds are still loading, and there is nothing to decode
+		// for the sounds we know nothing of or couldn't decode before
+		if (ref == null || isPinned(id) || decoding[id] || failed[id]) {
+			return 0;
+		}
+
+		decoding[id] = true;
+
+		final int sound = id;
+		final long asked = System.nanoTime();
+
+		getDecoder().execute(new Runnable() {
+			public void run() {
+				OggData data = null;
+
+				try (InputStream in = new BufferedInputStream(new FileInputStream(ref))) {
+					data = new OggDecoder().getData(in);
+				} catch (IOException | RuntimeException e) {
+					// The sound will just not be heard, and we won't try again
+					System.out.println("WARNING: Sound " + ref + " could not be decoded: " + e.getMessage());
+				}
+
+				decoded.add(new Decoded(sound, data));
+
+				// We'll play it now if it's still worth it, which also wakes
+				// the audio thread up to upload it
+				if (System.nanoTime() - asked < MAX_LATENESS) {
+					AudioQueue.post(sound);
+				}
+			}
+		});
+
+		return 0;
+	}
+
+	/**
+	 * 
+	 * This method uploads the sounds decoded so far, letting go of the ones
+	 * played the longest time ago to make room for them. It must be called on
+	 * the audio thread.
+	 * 
+	 */
+	public void update() {
+		Decoded sound;
+
+		while ((sound = decoded.poll()) != null) {
+			decoding[sound.id] = false;
+
+			if (sound.data == null) {
+				// It was already reported, so it is just never played
+				failed[sound.id] = true;
+				continue;
+			}
+
+			int size = sound.data.data.remaining();
+
+			// The sound just decoded is kept even if it doesn't fit, or it
+			// would be decoded over and over
+			while (resident.get() + size > budget && evictOldest()) {
+				// Until it fits, or nothing else can go
+			}
+
+			int buffer = AL10.alGenBuffers();
+			int format = sound.data.channels == 1 ? AL10.AL_FORMAT_MONO16 : AL10.AL_FORMAT_STEREO16;
+
+			AL10.alBufferData(buffer, format, sound.data.data, sound.data.rate);
+
+			sizes[sound.id] = size;
+			lastPlayed[sound.id] = System.nanoTime();
+			resident.addAndGet(size);
+			buffers.set(sound.id, buffer);
+		}
+	}
+
+	/**
+	 * 
+	 * This method lets go of the sound played the longest time ago, unless it
+	 * is pinned or playing
+	 * 
+	 * @return True if a sound was let go. False if none could be
+	 * 
+	 */
+	private boolean evictOldest() {
+		int oldest = -1;
+
+		for (int id = 0; id < sizes.length; ++id) {
+			if (sizes[id] == 0 || AudioQueue.isPlaying(id)) {
+				continue;
+			}
+
+			if (oldest < 0 || lastPlayed[id] < lastPlayed[oldest]) {
+				oldest = id;
+			}
+		}
+
+		if (oldest < 0) {
+			return false;
+		}
+
+		int buffer = buffers.getAndSet(oldest, 0);
+
+		// The sources it was last played on must let go of it first
+		AudioQueue.release(oldest);
+		AL10.alDeleteBuffers(buffer);
+
+		resident.addAndGet(-sizes[oldest]);
+		sizes[oldest] = 0;
+
+		return true;
+	}
+
+	/**
+	 * 
+	 * Getter for the decoding thread, started the first time it is needed
+	 * 
+	 * @return The executor decoding the sounds
+	 * 
+	 */
+	private ExecutorService getDecoder() {
+		if (decoder == null) {
+			decoder = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "Sound decoder");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		return decoder;
+	}
+
+	/**
+	 * 
+	 * Getter for the file of a sound
+	 * 
+	 * @param id The ID of the sound
+	 * @return The path to the sound, or null if it wasn't registered
+	 * 
+	 */
+	private synchronized String getRef(int id) {
+		return refs[id];
+	}
+
+	/**
+	 * 
+	 * This method tells if a sound is pinned
+	 * 
+	 * @param id The ID of the sound
+	 * @return True if it is kept for good. False otherwise
+	 * 
+	 */
+	private synchronized boolean isPinned(int id) {
+		return pinned[id];
+	}
+
+	/**
+	 * 
+	 * Getter for the size of the samples kept
+	 * 
+	 * @return How many bytes of samples are kept, pinned sounds included
+	 * 
+	 */
+	public long getResident() {
+		return resident.get();
+	}
+}
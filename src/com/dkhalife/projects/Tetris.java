@@ -1,61 +1,233 @@
-package com.dkhalife.projects;
-
-import org.newdawn.slick.AppGameContainer;
-import org.newdawn.slick.GameContainer;
-import org.newdawn.slick.SlickException;
-import org.newdawn.slick.state.StateBasedGame;
-
-/**
- * 
- * @author Dany Khalife
- * @since 26 December 2012
- * 
- */
-public class Tetris extends StateBasedGame {
-	// We'll have two states so we'll need an ID for each of them
-	public static final int MAINMENU_STATE = 0;
-	public static final int GAMEPLAY_STATE = 1;
-
-	/**
-	 * 
-	 * The game is constructed by constructing a StateBasedGame with both of the
-	 * states
-	 * 
-	 */
-	public Tetris() throws SlickException {
-		super("Tetris");
-
-		// Add our two states
-		addState(new MainMenuState(MAINMENU_STATE));
-		addState(new PlayingState(GAMEPLAY_STATE));
-
-		// Load our resources
-		ResourceManager.loadResources("res/resources.xml");
-
-		// And load the main menu state
-		enterState(MAINMENU_STATE);
-	}
-
-	/**
-	 * 
-	 * This method initialises both states
-	 * 
-	 */
-	@Override
-	public void initStatesList(GameContainer gc) throws SlickException {
-		this.getState(MAINMENU_STATE).init(gc, this);
-		this.getState(GAMEPLAY_STATE).init(gc, this);
-	}
-
-	// This main method launches the game
-	public static void main(String args[]) throws SlickException {
-		AppGameContainer app = new AppGameContainer(new Tetris());
-
-		// Limit the update calls and fps so that CPU wont explode
-		app.setMinimumLogicUpdateInterval(25);
-		app.setTargetFrameRate(30);
-		// We'll set the display as 800x600
-		app.setDisplayMode(800, 600, false);
-		app.start();
-	}
-}
+package com.dkhalife.projects;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.newdawn.slick.AppGameContainer;
+import org.newdawn.slick.GameContainer;
+import org.newdawn.slick.SlickException;
+import org.newdawn.slick.openal.SoundStore;
+import org.newdawn.slick.state.GameState;
+import org.newdawn.slick.state.StateBasedGame;
+
+/**
+ * 
+ * @author Dany Khalife
+ * @since 26 December 2012
+ * 
+ */
+public class Tetris extends StateBasedGame {
+	// We'll have four states so we'll need an ID for each of them
+	public static final int MAINMENU_STATE = 0;
+	public static final int GAMEPLAY_STATE = 1;
+	public static final int NAME_ENTRY_STATE = 2;
+	public static final int LOADING_STATE = 3;
+
+	// The resources left are uploaded for this long each frame, in
+	// nanoseconds
+	private static final long PREFETCH_BUDGET = 2000000L;
+
+	// The loading screen, shown before a state whose resources aren't there
+	private LoadingState loading = new LoadingState(LOADING_STATE);
+
+	/**
+	 * 
+	 * The game is constructed by constructing a StateBasedGame with both of the
+	 * states
+	 * 
+	 * @param replay A replay to watch instead of showing the main menu, or null
+	 * @param versus The other player of a versus game to play instead of
+	 *            showing the main menu, or null
+	 * 
+	 */
+	public Tetris(Replay replay, VersusLink versus) throws SlickException {
+		super("Tetris");
+
+		// Add our states
+		PlayingState playing = new PlayingState(GAMEPLAY_STATE);
+
+		// The loading screen comes first, then the main menu, the replay or the
+		// versus game
+		int first = replay != null || versus != null ? GAMEPLAY_STATE : MAINMENU_STATE;
+
+		addState(loading);
+		addState(new MainMenuState(MAINMENU_STATE));
+		addState(playing);
+		addState(new NameEntryState(NAME_ENTRY_STATE));
+
+		if (replay != null) {
+			playing.setReplay(replay);
+		}
+
+		playing.setVersus(versus);
+
+		// The auto shift can be tuned with -Dtetris.das=<ms> and
+		// -Dtetris.arr=<ms>
+		playing.setAutoShift(Integer.getInteger("tetris.das", GameEngine.DEFAULT_AUTO_SHIFT_DELAY),
+				Integer.getInteger("tetris.arr", GameEngine.DEFAULT_AUTO_REPEAT_RATE));
+
+		// And how long the bot thinks about a move with -Dtetris.bot=<ms>
+		playing.setAutoPlayBudget(Integer.getInteger("tetris.bot", AutoPlayer.DEFAULT_BUDGET));
+
+		// The samples of the sounds are kept within -Dtetris.sounds=<KiB>, the
+		// pinned ones being kept regardless
+		AudioQueue.setBudget(Integer.getInteger("tetris.sounds", SoundCache.DEFAULT_BUDGET) * 1024L);
+
+		// With -Dtetris.profile=true we'll time every frame, and save the
+		// timings when the game exits
+		if (Boolean.getBoolean("tetris.profile")) {
+			FrameProfiler.setEnabled(true);
+
+			Runtime.getRuntime().addShutdownHook(new Thread("Profile writer") {
+				public void run() {
+					FrameProfiler.export(new File(FrameProfiler.DIRECTORY));
+				}
+			});
+		}
+
+		// Start loading our resources, the first state's before the others
+		ResourceManager.loadResources(ManifestCompiler.XML, ManifestCompiler.BIN, ((ResourceUser) getState(first)).getResources());
+
+		// And show the loading screen until they are there
+		enterState(first);
+	}
+
+	/**
+	 * 
+	 * This method enters a state, going through the loading screen first if
+	 * the resources it needs aren't there yet
+	 * 
+	 */
+	@Override
+	public void enterState(int id) {
+		GameState state = getState(id);
+
+		if (state instanceof ResourceUser && !ResourceManager.isLoaded(((ResourceUser) state).getResources())) {
+			loading.setNextState(id, ((ResourceUser) state).getResources());
+			super.enterState(LOADING_STATE);
+			return;
+		}
+
+		super.enterState(id);
+	}
+
+	/**
+	 * 
+	 * This method uploads a few more of the resources left before each frame,
+	 * unless the loading screen does it
+	 * 
+	 */
+	@Override
+	protected void preUpdateState(GameContainer gc, int deltaT) throws SlickException {
+		if (getCurrentStateID() != LOADING_STATE && !ResourceManager.isLoaded()) {
+			ResourceManager.update(PREFETCH_BUDGET);
+		}
+	}
+
+	/**
+	 * 
+	 * This method initialises all the states
+	 * 
+	 */
+	@Override
+	public void initStatesList(GameContainer gc) throws SlickException {
+		// The sounds are played on their own thread, if there is a sound card
+		if (SoundStore.get().soundWorks()) {
+			AudioQueue.start();
+		}
+
+		this.getState(LOADING_STATE).init(gc, this);
+		this.getState(MAINMENU_STATE).init(gc, this);
+		this.getState(GAMEPLAY_STATE).init(gc, this);
+		this.getState(NAME_ENTRY_STATE).init(gc, this);
+	}
+
+	// This main method launches the game, "-replay <file>" watches a replay,
+	// "-server [port]" hosts games for other players without a window, and
+	// "-host [port]" or "-join <host>[:port]" play a versus game
+	public static void main(String args[]) throws SlickException {
+		Replay replay = null;
+		VersusLink versus = null;
+
+		// The scores still being written are saved however the game exits,
+		// from the menu or by stopping the server
+		Runtime.getRuntime().addShutdownHook(new Thread("Score saver") {
+			public void run() {
+				Highscores.close();
+			}
+		});
+
+		if (args.length >= 1 && args[0].equals("-server")) {
+			serve(args.length >= 2 ? Integer.parseInt(args[1]) : Protocol.DEFAULT_PORT);
+			return;
+		}
+
+		if (args.length >= 2 && args[0].equals("-replay")) {
+			try {
+				replay = Replay.load(new File(args[1]));
+			} catch (IOException e) {
+				System.out.println("ERROR: " + e.getMessage());
+				return;
+			}
+
+			// The playing screen only shows pits of its own size
+			if (replay.getWidth() != PlayingState.PIT_WIDTH || replay.getHeight() != PlayingState.PIT_HEIGHT) {
+				System.out.println("ERROR: Replay " + args[1] + " was played in a " + replay.getWidth() + "x" + replay.getHeight() + " pit, only "
+						+ PlayingState.PIT_WIDTH + "x" + PlayingState.PIT_HEIGHT + " can be watched");
+				return;
+			}
+		}
+
+		try {
+			if (args.length >= 1 && args[0].equals("-host")) {
+				int port = args.length >= 2 ? Integer.parseInt(args[1]) : Protocol.DEFAULT_VERSUS_PORT;
+				versus = VersusLink.host(port, PlayingState.PIT_WIDTH, PlayingState.PIT_HEIGHT);
+			}
+			else if (args.length >= 2 && args[0].equals("-join")) {
+				String host = args[1];
+				int port = Protocol.DEFAULT_VERSUS_PORT;
+				int colon = host.lastIndexOf(':');
+
+				if (colon >= 0) {
+					port = Integer.parseInt(host.substring(colon + 1));
+					host = host.substring(0, colon);
+				}
+
+				versus = VersusLink.join(host, port, PlayingState.PIT_WIDTH, PlayingState.PIT_HEIGHT);
+			}
+		} catch (IOException e) {
+			System.out.println("ERROR: " + e.getMessage());
+			return;
+		}
+
+		AppGameContainer app = new AppGameContainer(new Tetris(replay, versus));
+
+		// The game is played on its own thread at a fixed rate, so we only
+		// draw it as often as the display refreshes
+		app.setVSync(true);
+		// We'll set the display as 800x600
+		app.setDisplayMode(800, 600, false);
+		app.start();
+	}
+
+	/**
+	 * 
+	 * This method hosts games until the process is killed
+	 * 
+	 * @param port The port to listen on
+	 * 
+	 */
+	private static void serve(int port) {
+		GameServer server;
+
+		try {
+			server = new GameServer(port, Runtime.getRuntime().availableProcessors(), GameServer.DEFAULT_MAX_SESSIONS);
+		} catch (IOException e) {
+			System.out.println("ERROR: " + e.getMessage());
+			return;
+		}
+
+		System.out.println("Serving games on port " + server.getPort());
+		server.run();
+	}
+}
@@ -0,0 +1,263 @@
+package com.dkhalife.projects;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.lwjgl.BufferUtils;
+import org.newdawn.slick.Image;
+import org.newdawn.slick.opengl.ImageData;
+
+/**
+ * 
+ * This class packs several decoded images into a single texture so that they
+ * can all be drawn between one Image.startUse() and Image.endUse(). The
+ * sprites are laid out on shelves, the tallest first, with a pixel of padding
+ * around each of them.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class TextureAtlas implements ImageData {
+	// The space left around each sprite so that they don't bleed into each
+	// other
+	private static final int PADDING = 1;
+
+	// The widest an atlas can get before we start a new shelf
+	private static final int MAX_WIDTH = 512;
+
+	// The sprites to pack
+	private List<Sprite> sprites = new ArrayList<>();
+
+	// The size of the atlas, and of its texture
+	private int width = 0;
+	private int height = 0;
+	private int texWidth = 0;
+	private int texHeight = 0;
+
+	// The packed pixels, in RGBA
+	private ByteBuffer pixels = null;
+
+	/**
+	 * 
+	 * A sprite is one of the images packed into the atlas
+	 * 
+	 */
+	private static class Sprite {
+		private String id;
+		private ImageData data;
+		private int x;
+		private int y;
+
+		Sprite(String id, ImageData data) {
+			this.id = id;
+			this.data = data;
+		}
+	}
+
+	/**
+	 * 
+	 * This method adds an image to the atlas, before it is packed
+	 * 
+	 * @param id The ID of the image
+	 * @param data The decoded image, in RGB or RGBA
+	 * 
+	 */
+	public void add(String id, ImageData data) {
+		sprites.add(new Sprite(id, data));
+	}
+
+	/**
+	 * 
+	 * This method lays the sprites out and copies their pixels into the atlas
+	 * 
+	 */
+	public void pack() {
+		// The tallest sprites go first so that the shelves waste little room
+		Collections.sort(sprites, new Comparator<Sprite>() {
+			public int compare(Sprite a, Sprite b) {
+				return b.data.getHeight() - a.data.getHeight();
+			}
+		});
+
+		int x = 0;
+		int y = 0;
+		int shelfHeight = 0;
+
+		for (Sprite sprite : sprites) {
+			int w = sprite.data.getWidth() + 2 * PADDING;
+			int h = sprite.data.getHeight() + 2 * PADDING;
+
+			if (x > 0 && x + w > MAX_WIDTH) {
+				x = 0;
+				y += shelfHeight;
+				shelfHeight = 0;
+			}
+
+			sprite.x = x + PADDING;
+			sprite.y = y + PADDING;
+
+			x += w;
+			shelfHeight = Math.max(shelfHeight, h);
+			width = Math.max(width, x);
+		}
+
+		height = y + shelfHeight;
+		texWidth = nextPowerOfTwo(width);
+		texHeight = nextPowerOfTwo(height);
+
+		// Then we'll copy the pixels
+		pixels = BufferUtils.createByteBuffer(texWidth * texHeight * 4);
+
+		for (Sprite sprite : sprites) {
+			copy(sprite);
+		}
+	}
+
+	/**
+	 * 
+	 * This method cuts the images out of the atlas once it is uploaded
+	 * 
+	 * @param texture The atlas, uploaded as an image
+	 * @param id The ID of the image
+	 * @return The image, sharing the texture of the atlas
+	 * 
+	 */
+	public Image getImage(Image texture, String id) {
+		for (Sprite sprite : sprites) {
+			if (sprite.id.equals(id)) {
+				return texture.getSubImage(sprite.x, sprite.y, sprite.data.getWidth(), sprite.data.getHeight());
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * 
+	 * Getter for the IDs of the images in the atlas
+	 * 
+	 * @return The IDs
+	 * 
+	 */
+	public List<String> getIds() {
+		List<String> ids = new ArrayList<>(sprites.size());
+
+		for (Sprite sprite : sprites) {
+			ids.add(sprite.id);
+		}
+
+		return ids;
+	}
+
+	/**
+	 * 
+	 * This method copies the pixels of a sprite into the atlas
+	 * 
+	 * @param sprite The sprite, already laid out
+	 * 
+	 */
+	private void copy(Sprite sprite) {
+		ImageData data = sprite.data;
+		ByteBuffer source = data.getImageBufferData();
+		int bytesPerPixel = data.getDepth() / 8;
+
+		for (int row = 0; row < data.getHeight(); ++row) {
+			int from = row * data.getTexWidth() * bytesPerPixel;
+			int to = ((sprite.y + row) * texWidth + sprite.x) * 4;
+
+			for (int col = 0; col < data.getWidth(); ++col) {
+				pixels.put(to++, source.get(from++));
+				pixels.put(to++, source.get(from++));
+				pixels.put(to++, source.get(from++));
+				pixels.put(to++, bytesPerPixel == 4 ? source.get(from++) : (byte) 0xFF);
+			}
+		}
+	}
+
+	/**
+	 * 
+	 * This method rounds a size up to what a texture can have
+	 * 
+	 * @param size The size
+	 * @return The smallest power of two that is not smaller than the size
+	 * 
+	 */
+	private static int nextPowerOfTwo(int size) {
+		int power = 1;
+
+		while (power < size) {
+			power <<= 1;
+		}
+
+		return power;
+	}
+
+	/**
+	 * 
+	 * Getter for the depth
+	 * 
+	 * @return The number of bits per pixel, the atlas is always RGBA
+	 * 
+	 */
+	public int getDepth() {
+		return 32;
+	}
+
+	/**
+	 * 
+	 * Getter for the width
+	 * 
+	 * @return The width taken by the sprites
+	 * 
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * 
+	 * Getter for the height
+	 * 
+	 * @return The height taken by the sprites
+	 * 
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * 
+	 * Getter for the width of the texture
+	 * 
+	 * @return The width of the atlas rounded up to a power of two
+	 * 
+	 */
+	public int getTexWidth() {
+		return texWidth;
+	}
+
+	/**
+	 * 
+	 * Getter for the height of the texture
+	 * 
+	 * @return The height of the atlas rounded up to a power of two
+	 * 
+	 */
+	public int getTexHeight() {
+		return texHeight;
+	}
+
+	/**
+	 * 
+	 * Getter for the pixels
+	 * 
+	 * @return The packed pixels, in RGBA
+	 * 
+	 */
+	public ByteBuffer getImageBufferData() {
+		return pixels;
+	}
+}
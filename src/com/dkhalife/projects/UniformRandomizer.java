@@ -0,0 +1,21 @@
+package com.dkhalife.projects;
+
+/**
+ * 
+ * This randomizer picks every piece independently, each with the same chance.
+ * This is how the game always picked its pieces, droughts included.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class UniformRandomizer extends Randomizer {
+	@Override
+	public int next() {
+		return nextInt(PieceFactory.PIECE_TYPES);
+	}
+
+	@Override
+	protected void reset() {
+		// Nothing to remember
+	}
+}
@@ -0,0 +1,454 @@
+package com.dkhalife.projects;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * 
+ * This class connects the two players of a versus game. One of them hosts
+ * the game and the other joins it, then each one sends the other its pit as
+ * it changes and garbage lines as it clears them.
+ * 
+ * Nothing here blocks: the playing screen polls the link once per update,
+ * which accepts or finishes the connection, reads what arrived and sends what
+ * is pending, all through buffers allocated once.
+ * 
+ * @author Dany Khalife
+ * 
+ */
+public class VersusLink {
+	// The size of the buffers, far more than a frame's worth of messages
+	private static final int BUFFER_SIZE = 8192;
+
+	// The socket waiting for the other player, while hosting
+	private ServerSocketChannel server = null;
+
+	// The connection to the other player
+	private SocketChannel channel = null;
+	private boolean connected = false;
+	private boolean closed = false;
+
+	// The bytes read but not handled yet, and the bytes not sent yet
+	private ByteBuffer readBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private ByteBuffer writeBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+	// Both pits, ours being sent and theirs being received
+	private PitSync sync;
+
+	// What we heard from the other player
+	private boolean helloReceived = false;
+	private boolean opponentLost = false;
+	private int incomingGarbage = 0;
+	private int pendingAck = -1;
+
+	/**
+	 * 
+	 * To construct a link we need the size of the pits
+	 * 
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * 
+	 */
+	private VersusLink(int width, int height) {
+		sync = new PitSync(width, height);
+	}
+
+	/**
+	 * 
+	 * This method hosts a versus game
+	 * 
+	 * @param port The port to wait for the other player on
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * @return The link, connected once the other player joins
+	 * @throws IOException If the port can't be listened on
+	 * 
+	 */
+	public static VersusLink host(int port, int width, int height) throws IOException {
+		VersusLink link = new VersusLink(width, height);
+
+		link.server = ServerSocketChannel.open();
+		link.server.configureBlocking(false);
+		link.server.bind(new InetSocketAddress(port));
+
+		return link;
+	}
+
+	/**
+	 * 
+	 * This method joins a versus game
+	 * 
+	 * @param host The name or address of the other player's machine
+	 * @param port The port the game is hosted on
+	 * @param width The pit's width
+	 * @param height The pit's height
+	 * @return The link, connected once the other player accepts
+	 * @throws IOException If the other player can't be reached
+	 * 
+	 */
+	public static VersusLink join(String host, int port, int width, int height) throws IOException {
+		VersusLink link = new VersusLink(width, height);
+
+		link.channel = SocketChannel.open();
+		link.channel.configureBlocking(false);
+
+		if (link.channel.connect(new InetSocketAddress(host, port))) {
+			link.connected();
+		}
+
+		return link;
+	}
+
+	/**
+	 * 
+	 * This method finishes connecting, reads the messages that arrived and
+	 * sends the pending ones
+	 * 
+	 */
+	public void poll() {
+		if (closed) {
+			return;
+		}
+
+		try {
+			if (server != null) {
+				SocketChannel accepted = server.accept();
+
+				if (accepted != null) {
+					// We only play against one player
+					server.close();
+					server = null;
+
+					channel = accepted;
+					channel.configureBlocking(false);
+					connected();
+				}
+			}
+			else if (!connected && channel.finishConnect()) {
+				connected();
+			}
+
+			if (connected) {
+				read();
+			}
+
+			if (connected && !closed) {
+				flush();
+			}
+		} catch (IOException e) {
+			System.out.println("WARNING: The other player is gone: " + e.getMessage());
+			close();
+		}
+	}
+
+	/**
+	 * 
+	 * This method greets the other player once connected
+	 * 
+	 * @throws IOException If the socket can't be set up
+	 * 
+	 */
+	private void connected() throws IOException {
+		channel.socket().setTcpNoDelay(true);
+		connected = true;
+
+		writeBuffer.put(Protocol.HELLO);
+		writeBuffer.putShort((short) 2);
+		writeBuffer.put((byte) sync.getWidth());
+		writeBuffer.put((byte) sync.getHeight());
+	}
+
+	/**
+	 * 
+	 * This method reads and handles the messages of the other player
+	 * 
+	 * @throws IOException If the connection was lost
+	 * 
+	 */
+	private void read() throws IOException {
+		if (channel.read(readBuffer) < 0) {
+			// Once they lost, the other player is expected to leave
+			if (opponentLost) {
+				close();
+				return;
+			}
+
+			throw new IOException("The connection was closed");
+		}
+
+		readBuffer.flip();
+
+		while (readBuffer.remaining() >= Protocol.VERSUS_HEADER_SIZE) {
+			int start = readBuffer.position();
+			byte type = readBuffer.get(start);
+			int size = readBuffer.getShort(start + 1) & 0xFFFF;
+
+			if (size > BUFFER_SIZE - Protocol.VERSUS_HEADER_SIZE) {
+				throw new IOException("A message is too large");
+			}
+
+			if (readBuffer.remaining() < Protocol.VERSUS_HEADER_SIZE + size) {
+				// The rest of the message hasn't arrived yet
+				break;
+			}
+
+			// A message can't read past its own end
+			int end = start + Protocol.VERSUS_HEADER_SIZE + size;
+			int limit = readBuffer.limit();
+
+			readBuffer.position(start + Protocol.VERSUS_HEADER_SIZE);
+			readBuffer.limit(end);
+
+			try {
+				handle(type);
+			} catch (IllegalArgumentException | BufferUnderflowException | IndexOutOfBoundsException e) {
+				throw new IOException("A message makes no sense: " + e.getMessage());
+			}
+
+			// Whatever was handled, the next message starts after this one
+			readBuffer.limit(limit);
+			readBuffer.position(end);
+		}
+
+		readBuffer.compact();
+
+		// We only need to acknowledge the last snapshot
+		if (pendingAck >= 0 && writeBuffer.remaining() >= Protocol.VERSUS_HEADER_SIZE + 4) {
+			writeBuffer.put(Protocol.ACK);
+			writeBuffer.putShort((short) 4);
+			writeBuffer.putInt(pendingAck);
+			pendingAck = -1;
+		}
+	}
+
+	/**
+	 * 
+	 * This method handles a message of the other player, whose payload is at
+	 * the position of the read buffer
+	 * 
+	 * @param type The type of the message
+	 * @throws IOException If the message makes no sense
+	 * 
+	 */
+	private void handle(byte type) throws IOException {
+		switch (type) {
+			case Protocol.HELLO:
+				int width = readBuffer.get() & 0xFF;
+				int height = readBuffer.get() & 0xFF;
+
+				if (width != sync.getWidth() || height != sync.getHeight()) {
+					throw new IOException("The other player's pit is " + width + "x" + height);
+				}
+
+				helloReceived = true;
+			break;
+
+			case Protocol.SNAPSHOT:
+				pendingAck = sync.decode(readBuffer);
+			break;
+
+			case Protocol.ACK:
+				sync.acknowledge(readBuffer.getInt());
+			break;
+
+			case Protocol.GARBAGE:
+				int lines = readBuffer.get() & 0xFF;
+
+				if (lines == 0 || lines > sync.getHeight()) {
+					throw new IOException("The other player sent " + lines + " garbage lines");
+				}
+
+				// More than a pit of garbage is no worse than a pit of it
+				incomingGarbage = Math.min(incomingGarbage + lines, sync.getHeight());
+			break;
+
+			case Protocol.LOST:
+				opponentLost = true;
+			break;
+		}
+	}
+
+	/**
+	 * 
+	 * This method sends as much of the pending bytes as the other player takes
+	 * 
+	 * @throws IOException If the connection was lost
+	 * 
+	 */
+	private void flush() throws IOException {
+		if (writeBuffer.position() == 0) {
+			return;
+		}
+
+		writeBuffer.flip();
+		channel.write(writeBuffer);
+		writeBuffer.compact();
+	}
+
+	/**
+	 * 
+	 * This method sends our pit if it changed since the last time
+	 * 
+	 * @param pit Our pit
+	 * @param score Our score
+	 * 
+	 */
+	public void sendBoard(Pit pit, int score) {
+		if (!isReady() || !sync.hasChanged(pit, score)) {
+			return;
+		}
+
+		// If the other player doesn't keep up, they'll get it later
+		if (writeBuffer.remaining() < Protocol.VERSUS_HEADER_SIZE + sync.getMaxSize()) {
+			return;
+		}
+
+		int start = writeBuffer.position();
+
+		writeBuffer.put(Protocol.SNAPSHOT);
+		writeBuffer.putShort((short) 0);
+
+		sync.encode(pit, score, writeBuffer);
+
+		// Now that we know its size
+		writeBuffer.putShort(start + 1, (short) (writeBuffer.position() - start - Protocol.VERSUS_HEADER_SIZE));
+
+		try {
+			flush();
+		} catch (IOException e) {
+			close();
+		}
+	}
+
+	/**
+	 * 
+	 * This method sends garbage lines to the other player
+	 * 
+	 * @param lines The number of lines, at most the pit's height is sent
+	 * 
+	 */
+	public void sendGarbage(int lines) {
+		if (lines <= 0 || !isReady() || writeBuffer.remaining() < Protocol.VERSUS_HEADER_SIZE + 1) {
+			return;
+		}
+
+		writeBuffer.put(Protocol.GARBAGE);
+		writeBuffer.putShort((short) 1);
+		writeBuffer.put((byte) Math.min(lines, sync.getHeight()));
+	}
+
+	/**
+	 * 
+	 * This method takes the garbage lines sent by the other player
+	 * 
+	 * @return The number of lines received since the last call
+	 * 
+	 */
+	public int takeGarbage() {
+		int lines = incomingGarbage;
+		incomingGarbage = 0;
+
+		return lines;
+	}
+
+	/**
+	 * 
+	 * This method tells the other player that our game is over, then closes
+	 * the link
+	 * 
+	 */
+	public void finish() {
+		if (closed) {
+			return;
+		}
+
+		try {
+			if (connected && writeBuffer.remaining() >= Protocol.VERSUS_HEADER_SIZE) {
+				writeBuffer.put(Protocol.LOST);
+				writeBuffer.putShort((short) 0);
+
+				// This is the last message, so we'll wait for it to leave
+				channel.configureBlocking(true);
+				writeBuffer.flip();
+
+				while (writeBuffer.hasRemaining()) {
+					channel.write(writeBuffer);
+				}
+
+				writeBuffer.clear();
+			}
+		} catch (IOException e) {
+			// The other player is gone already
+		}
+
+		close();
+	}
+
+	/**
+	 * 
+	 * This method closes the link
+	 * 
+	 */
+	private void close() {
+		closed = true;
+
+		try {
+			if (server != null)
+				server.close();
+
+			if (channel != null)
+				channel.close();
+		} catch (IOException e) {
+			// There's nothing left to do with them anyway
+		}
+	}
+
+	/**
+	 * 
+	 * This method tells if both players can start playing
+	 * 
+	 * @return True if the other player is connected and greeted us. False
+	 *         otherwise
+	 * 
+	 */
+	public boolean isReady() {
+		return connected && helloReceived && !closed;
+	}
+
+	/**
+	 * 
+	 * This method tells if the link is over
+	 * 
+	 * @return True if the link was closed or lost. False otherwise
+	 * 
+	 */
+	public boolean isClosed() {
+		return closed;
+	}
+
+	/**
+	 * 
+	 * This method tells if the other player's game is over
+	 * 
+	 * @return True if the other player lost. False otherwise
+	 * 
+	 */
+	public boolean isOpponentLost() {
+		return opponentLost;
+	}
+
+	/**
+	 * 
+	 * Getter for the other player's pit
+	 * 
+	 * @return The sync holding the other player's pit and score
+	 * 
+	 */
+	public PitSync getOpponent() {
+		return sync;
+	}
+}